@@ -16,41 +16,75 @@
 package com.intellij.execution.filters;
 
 import com.intellij.util.io.URLUtil;
-import com.jediterm.terminal.model.hyperlinks.HyperlinkFilter;
+import com.jediterm.terminal.model.hyperlinks.AnchoredHyperlinkFilter;
 import com.jediterm.terminal.model.hyperlinks.LinkInfo;
 import com.jediterm.terminal.model.hyperlinks.LinkResult;
 import com.jediterm.terminal.model.hyperlinks.LinkResultItem;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.awt.*;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.regex.Matcher;
 
 /**
  * @author yole
  */
-public class UrlFilter implements HyperlinkFilter {
+public class UrlFilter implements AnchoredHyperlinkFilter {
+  private static final List<String> ANCHORS = Arrays.asList("mailto:", "://", "www.");
+
+  @NotNull
+  @Override
+  public List<String> getAnchors() {
+    return ANCHORS;
+  }
+
   @Nullable
   @Override
   public LinkResult apply(String line) {
     if (!URLUtil.canContainUrl(line)) return null;
 
-    int textStartOffset = 0;
-    Matcher m = URLUtil.URL_PATTERN.matcher(line);
-    LinkResultItem item = null;
-    List<LinkResultItem> items = null;
-    while (m.find()) {
-      if (item != null) {
-        if (items == null) {
-          items = new ArrayList<>(2);
-          items.add(item);
-        }
+    List<LinkResultItem> items = new ArrayList<>(1);
+    find(line, 0, line.length(), items);
+    return toResult(items);
+  }
+
+  /**
+   * URLs don't contain whitespace, so the pattern is matched only in the words that contain anchors
+   */
+  @Nullable
+  @Override
+  public LinkResult apply(@NotNull String line, @NotNull int[] anchorOffsets) {
+    List<LinkResultItem> items = new ArrayList<>(1);
+    int regionEnd = 0;
+    for (int offset : anchorOffsets) {
+      if (offset < regionEnd) {
+        continue;
       }
+      int start = offset;
+      while (start > regionEnd && !Character.isWhitespace(line.charAt(start - 1))) {
+        start--;
+      }
+      int end = offset;
+      while (end < line.length() && !Character.isWhitespace(line.charAt(end))) {
+        end++;
+      }
+      find(line, start, end, items);
+      regionEnd = end;
+    }
+    return toResult(items);
+  }
 
+  private static void find(@NotNull String line, int start, int end, @NotNull List<LinkResultItem> items) {
+    Matcher m = URLUtil.URL_PATTERN.matcher(line);
+    m.region(start, end);
+    m.useTransparentBounds(true);
+    while (m.find()) {
       String url = m.group();
-      item = new LinkResultItem(textStartOffset + m.start(), textStartOffset + m.end(), new LinkInfo(new Runnable() {
+      items.add(new LinkResultItem(m.start(), m.end(), new LinkInfo(new Runnable() {
         @Override
         public void run() {
           try {
@@ -59,14 +93,14 @@ public class UrlFilter implements HyperlinkFilter {
             //pass
           }
         }
-      }));
-
-      if (items != null) {
-        items.add(item);
-      }
+      })));
     }
-    return items != null ? new LinkResult(items)
-            : item != null ? new LinkResult(item)
+  }
+
+  @Nullable
+  private static LinkResult toResult(@NotNull List<LinkResultItem> items) {
+    return items.size() > 1 ? new LinkResult(items)
+            : items.size() == 1 ? new LinkResult(items.get(0))
             : null;
   }
 }
@@ -17,6 +17,7 @@ import com.jediterm.terminal.ui.*
 import com.jediterm.terminal.ui.settings.DefaultTabbedSettingsProvider
 import com.jediterm.terminal.ui.settings.SettingsProvider
 import com.jediterm.terminal.ui.settings.TabbedSettingsProvider
+import com.jediterm.terminal.util.ChunkDecoder
 import com.pty4j.PtyProcess
 import org.apache.log4j.BasicConfigurator
 import org.apache.log4j.ConsoleAppender
@@ -117,6 +118,7 @@ class JediTerm : AbstractTerminalFrame(), Disposable {
 
     class LoggingPtyProcessTtyConnector(process: PtyProcess, charset: Charset) : PtyProcessTtyConnector(process, charset), LoggingTtyConnector {
         private val myDataChunks = Lists.newArrayList<CharArray>()
+        private val myDecoder = ChunkDecoder(charset)
 
         @Throws(IOException::class)
         override fun read(buf: CharArray, offset: Int, length: Int): Int {
@@ -128,6 +130,15 @@ class JediTerm : AbstractTerminalFrame(), Disposable {
             return len
         }
 
+        @Throws(IOException::class)
+        override fun read(buf: ByteArray, offset: Int, length: Int): Int {
+            val len = super.read(buf, offset, length)
+            if (len > 0) {
+                myDataChunks.add(myDecoder.decode(buf, offset, len))
+            }
+            return len
+        }
+
         override fun getChunks(): List<CharArray> {
             return Lists.newArrayList(myDataChunks)
         }
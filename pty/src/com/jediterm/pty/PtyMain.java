@@ -8,6 +8,7 @@ import com.jediterm.terminal.TtyConnector;
 import com.jediterm.terminal.emulator.ColorPalette;
 import com.jediterm.terminal.ui.AbstractTerminalFrame;
 import com.jediterm.terminal.ui.UIUtil;
+import com.jediterm.terminal.util.ChunkDecoder;
 import com.pty4j.PtyProcess;
 import com.sun.jna.Platform;
 import org.apache.log4j.BasicConfigurator;
@@ -55,9 +56,11 @@ public class PtyMain extends AbstractTerminalFrame {
 
   public static class LoggingPtyProcessTtyConnector extends PtyProcessTtyConnector implements LoggingTtyConnector {
     private List<char[]> myDataChunks = Lists.newArrayList();
+    private final ChunkDecoder myDecoder;
 
     public LoggingPtyProcessTtyConnector(PtyProcess process, Charset charset) {
       super(process, charset);
+      myDecoder = new ChunkDecoder(charset);
     }
 
     @Override
@@ -70,6 +73,15 @@ public class PtyMain extends AbstractTerminalFrame {
       return len;
     }
 
+    @Override
+    public int read(byte[] buf, int offset, int length) throws IOException {
+      int len = super.read(buf, offset, length);
+      if (len > 0) {
+        myDataChunks.add(myDecoder.decode(buf, offset, len));
+      }
+      return len;
+    }
+
     public List<char[]> getChunks() {
       return Lists.newArrayList(myDataChunks);
     }
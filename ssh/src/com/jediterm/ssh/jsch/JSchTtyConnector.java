@@ -12,6 +12,8 @@ import org.apache.log4j.Logger;
 
 import java.awt.*;
 import java.io.*;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public abstract class JSchTtyConnector<T extends Channel> implements TtyConnector {
@@ -183,10 +185,16 @@ public abstract class JSchTtyConnector<T extends Channel> implements TtyConnecto
     return myInputStreamReader.read(buf, offset, length);
   }
 
+  @Override
   public int read(byte[] buf, int offset, int length) throws IOException {
     return myInputStream.read(buf, offset, length);
   }
 
+  @Override
+  public Charset getCharset() {
+    return StandardCharsets.UTF_8;
+  }
+
   public void write(byte[] bytes) throws IOException {
     if (myOutputStream != null) {
       myOutputStream.write(bytes);
@@ -35,20 +35,7 @@ public class ArrayTerminalDataStream implements TerminalDataStream {
   }
 
   public void pushChar(final char c) throws EOF {
-    if (myOffset == 0) {
-      // Pushed back too many... shift it up to the end.
-
-      char[] newBuf;
-      if (myBuf.length - myLength == 0) {
-        newBuf = new char[myBuf.length + 1];
-      }
-      else {
-        newBuf = myBuf;
-      }
-      myOffset = newBuf.length - myLength;
-      System.arraycopy(myBuf, 0, newBuf, myOffset, myLength);
-      myBuf = newBuf;
-    }
+    ensureHeadroom(1);
 
     myLength++;
     myBuf[--myOffset] = c;
@@ -63,9 +50,58 @@ public class ArrayTerminalDataStream implements TerminalDataStream {
     return nonControlCharacters;
   }
 
+  /**
+   * Passes a slice of the stream buffer to the terminal without copying. The first char is still in the buffer right
+   * before the unread data, so the slice starts there instead of pushing the char back.
+   */
+  @Override
+  public int writeNonControlCharacters(char first, int maxChars, Terminal terminal) throws IOException {
+    if (myOffset > 0 && myBuf[myOffset - 1] == first) {
+      myOffset--;
+      myLength++;
+    }
+    else {
+      pushChar(first); // the char wasn't read from this buffer
+    }
+    int offset = myOffset;
+    int length = CharUtils.countNonControlCharacters(maxChars, myBuf, myOffset, myLength);
+
+    myOffset += length;
+    myLength -= length;
+
+    terminal.writeCharacters(myBuf, offset, length);
+
+    return length;
+  }
+
+  @Override
+  public int available() {
+    return myLength;
+  }
+
   public void pushBackBuffer(final char[] bytes, final int length) throws EOF {
-    for (int i = length - 1; i >= 0; i--) {
-      pushChar(bytes[i]);
+    ensureHeadroom(length);
+
+    myOffset -= length;
+    myLength += length;
+    System.arraycopy(bytes, 0, myBuf, myOffset, length);
+  }
+
+  /**
+   * Makes room for at least <b>count</b> chars in front of the unread data. Unread data is moved to the end
+   * of a buffer that is at least twice as long as needed, so pushing back chars one by one takes amortized
+   * constant time.
+   */
+  private void ensureHeadroom(int count) {
+    if (myOffset >= count) {
+      return;
     }
+
+    int required = myLength + count;
+    char[] newBuf = myBuf.length >= 2 * required ? myBuf : new char[2 * required];
+    int newOffset = newBuf.length - myLength;
+    System.arraycopy(myBuf, myOffset, newBuf, newOffset, myLength);
+    myBuf = newBuf;
+    myOffset = newOffset;
   }
 }
@@ -28,16 +28,27 @@ public abstract class DataStreamIteratingEmulator implements Emulator {
     myEof = false;
   }
 
+  /**
+   * Processes chars until the chunk that is already read from the stream is drained. All changes of the chunk are
+   * made in one batch, so the display is notified once per chunk.
+   */
   @Override
   public void next() throws IOException {
+    myTerminal.beginBatch();
     try {
-      char b = myDataStream.getChar();
+      do {
+        char b = myDataStream.getChar();
 
-      processChar(b, myTerminal);
+        processChar(b, myTerminal);
+      }
+      while (myDataStream.available() > 0);
     }
     catch (TerminalDataStream.EOF e) {
       myEof = true;
     }
+    finally {
+      myTerminal.endBatch();
+    }
   }
 
   protected abstract void processChar(char ch, Terminal terminal) throws IOException;
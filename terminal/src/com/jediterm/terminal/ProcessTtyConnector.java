@@ -47,7 +47,16 @@ public abstract class ProcessTtyConnector implements TtyConnector {
 
   public int read(char[] buf, int offset, int length) throws IOException {
     return myReader.read(buf, offset, length);
-    //return myInputStream.read(buf, offset, length);
+  }
+
+  @Override
+  public int read(byte[] buf, int offset, int length) throws IOException {
+    return myInputStream.read(buf, offset, length);
+  }
+
+  @Override
+  public Charset getCharset() {
+    return myCharset;
   }
 
   public void write(byte[] bytes) throws IOException {
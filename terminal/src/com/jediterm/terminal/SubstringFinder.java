@@ -92,17 +92,24 @@ public class SubstringFinder {
 
   public static class FindResult {
     private final List<FindItem> items = Lists.newArrayList();
-    private final Map<CharBuffer, List<Pair<Integer, Integer>>> ranges = Maps.newHashMap();
+    private final Map<Integer, List<Pair<Integer, Integer>>> rowRanges = Maps.newHashMap();
     private int currentFindItem = 0;
 
-    public List<Pair<Integer, Integer>> getRanges(CharBuffer characters) {
-      return ranges.get(characters);
+    /**
+     * @param y row counted from the first history line
+     * @return column ranges of the matches in the row, end is exclusive
+     */
+    public List<Pair<Integer, Integer>> getRanges(int y) {
+      return rowRanges.get(y);
     }
 
     public static class FindItem {
       final ArrayList<TextToken> tokens;
       final int firstIndex;
       final int lastIndex;
+      private final Point start;
+      private final Point end;
+      private final String text;
 
       // index in the result list
       final int index;
@@ -112,9 +119,25 @@ public class SubstringFinder {
         this.firstIndex = firstIndex;
         this.lastIndex = lastIndex;
         this.index = index;
+        this.start = new Point(tokens.get(0).x + firstIndex, tokens.get(0).y);
+        this.end = new Point(tokens.get(tokens.size() - 1).x + lastIndex, tokens.get(tokens.size() - 1).y);
+        this.text = null;
+      }
+
+      private FindItem(Point start, Point end, String text, int index) {
+        this.tokens = null;
+        this.firstIndex = 0;
+        this.lastIndex = 0;
+        this.start = start;
+        this.end = end;
+        this.text = text;
+        this.index = index;
       }
 
       public String toString() {
+        if (text != null) {
+          return text;
+        }
         StringBuilder b = new StringBuilder();
 
         if (tokens.size() > 1) {
@@ -143,42 +166,55 @@ public class SubstringFinder {
       }
 
       public Point getStart() {
-        return new Point(tokens.get(0).x + firstIndex, tokens.get(0).y);
+        return new Point(start);
       }
 
       public Point getEnd() {
-        return new Point(tokens.get(tokens.size() - 1).x + lastIndex, tokens.get(tokens.size() - 1).y);
+        return new Point(end);
       }
     }
 
     public void patternMatched(ArrayList<TextToken> tokens, int firstIndex, int lastIndex) {
       if (tokens.size() > 1) {
         Pair<Integer, Integer> range = Pair.create(firstIndex, tokens.get(0).buf.length());
-        put(tokens.get(0).buf, range);
+        put(tokens.get(0), range);
       } else {
         Pair<Integer, Integer> range = Pair.create(firstIndex, lastIndex + 1);
-        put(tokens.get(0).buf, range);
+        put(tokens.get(0), range);
       }
 
       for (int i = 1; i < tokens.size() - 1; i++) {
-        put(tokens.get(i).buf, Pair.create(0, tokens.get(i).buf.length()));
+        put(tokens.get(i), Pair.create(0, tokens.get(i).buf.length()));
       }
 
       if (tokens.size() > 1) {
         Pair<Integer, Integer> range = Pair.create(0, lastIndex + 1);
-        put(tokens.get(tokens.size() - 1).buf, range);
+        put(tokens.get(tokens.size() - 1), range);
       }
 
       items.add(new FindItem(tokens, firstIndex, lastIndex, items.size() + 1));
 
     }
 
-    private void put(CharBuffer characters, Pair<Integer, Integer> range) {
-      if (ranges.containsKey(characters)) {
-        ranges.get(characters).add(range);
-      } else {
-        ranges.put(characters, Lists.newArrayList(range));
+    /**
+     * Adds a match found by coordinates, rows are counted from the first history line
+     *
+     * @param end    the last char of the match
+     * @param width  width of the rows, a match continues to the next row after it
+     */
+    public void patternMatched(Point start, Point end, String text, int width) {
+      for (int y = start.y; y <= end.y; y++) {
+        putRow(y, Pair.create(y == start.y ? start.x : 0, y == end.y ? end.x + 1 : width));
       }
+      items.add(new FindItem(new Point(start), new Point(end), text, items.size() + 1));
+    }
+
+    private void put(TextToken token, Pair<Integer, Integer> range) {
+      putRow(token.y, Pair.create(token.x + range.first, token.x + range.second));
+    }
+
+    private void putRow(int y, Pair<Integer, Integer> range) {
+      rowRanges.computeIfAbsent(y, k -> new ArrayList<>()).add(range);
     }
 
     public List<FindItem> getItems() {
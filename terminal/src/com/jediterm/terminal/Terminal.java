@@ -17,6 +17,16 @@ import java.io.UnsupportedEncodingException;
 public interface Terminal {
   Dimension resize(Dimension dimension, RequestOrigin origin);
 
+  /**
+   * Starts a batch of commands, the display is notified once about all changes made until {@link #endBatch()}.
+   * Batches can be nested. Does nothing by default.
+   */
+  default void beginBatch() {
+  }
+
+  default void endBatch() {
+  }
+
   void beep();
 
   void backspace();
@@ -39,6 +49,14 @@ public interface Terminal {
 
   void writeCharacters(String string);
 
+  /**
+   * Writes chars directly from the given buffer. Chars are mapped in place according to the current
+   * character sets, so the buffer content may be changed.
+   */
+  default void writeCharacters(char[] buf, int offset, int length) {
+    writeCharacters(new String(buf, offset, length));
+  }
+
   int distanceToLineEnd();
 
   void reverseIndex();
@@ -8,24 +8,33 @@ import java.awt.*;
  * @author traff
  */
 public class TerminalColor {
+  private static final TerminalColor[] INDEXED_COLORS = new TerminalColor[256];
+
+  static {
+    for (int i = 0; i < INDEXED_COLORS.length; i++) {
+      INDEXED_COLORS[i] = new TerminalColor(i);
+    }
+  }
+
   public static final TerminalColor BLACK = index(0);
   public static final TerminalColor WHITE = index(15);
 
-  private int myColorIndex;
-  private Color myColor;
+  private final int myColorIndex;
+  private final int myRgb;
+  private Color myColor; // created on demand
 
   public TerminalColor(int index) {
     myColorIndex = index;
-    myColor = null;
+    myRgb = 0;
   }
 
   public TerminalColor(int r, int g, int b) {
     myColorIndex = -1;
-    myColor = new Color(r, g, b);
+    myRgb = (r & 0xff) << 16 | (g & 0xff) << 8 | b & 0xff;
   }
 
   public static TerminalColor index(int index) {
-    return new TerminalColor(index);
+    return index >= 0 && index < INDEXED_COLORS.length ? INDEXED_COLORS[index] : new TerminalColor(index);
   }
 
   public static TerminalColor rgb(int r, int g, int b) {
@@ -41,7 +50,12 @@ public class TerminalColor {
       throw new IllegalArgumentException("Color is indexed color so a palette is needed");
     }
 
-    return myColor;
+    Color color = myColor;
+    if (color == null) {
+      color = new Color(myRgb);
+      myColor = color;
+    }
+    return color;
   }
 
   public int getIndex() {
@@ -55,21 +69,12 @@ public class TerminalColor {
 
     TerminalColor that = (TerminalColor) o;
 
-    if (isIndexed()) {
-      if (!that.isIndexed()) return false;
-      if (myColorIndex != that.myColorIndex) return false;
-    } else {
-      if (that.isIndexed()) {
-        return false;
-      }
-      return myColor.equals(that.myColor);
-    }
-    return true;
+    return myColorIndex == that.myColorIndex && myRgb == that.myRgb;
   }
 
   @Override
   public int hashCode() {
-    return myColor != null ? myColor.hashCode() : myColorIndex;
+    return isIndexed() ? myColorIndex : myRgb | 1 << 24;
   }
 
   @Nullable
@@ -19,6 +19,32 @@ public interface TerminalDataStream {
 
   void pushBackBuffer(char[] bytes, int length) throws IOException;
 
+  /**
+   * @return count of chars that can be read without waiting for new data
+   */
+  default int available() {
+    return 0;
+  }
+
+  /**
+   * Passes <b>first</b>, which was just read by {@link #getChar()}, and the run of non-control characters that
+   * follows it to the terminal. The whole run is not longer than <b>maxChars</b>.
+   *
+   * @return number of passed characters including the first one
+   */
+  default int writeNonControlCharacters(char first, int maxChars, Terminal terminal) throws IOException {
+    pushChar(first);
+    char[] chars = readNonControlCharacters(maxChars).toCharArray();
+    terminal.writeCharacters(chars, 0, chars.length);
+    return chars.length;
+  }
+
+  /**
+   * Releases resources of the stream, e.g. stops threads reading the tty
+   */
+  default void close() {
+  }
+
   class EOF extends IOException {
     public EOF() {
       super("EOF: There is no more data or connection is lost");
@@ -63,6 +63,9 @@ public class TerminalStarter implements TerminalOutputStream {
       }
       LOG.error("Caught exception in terminal thread", e);
     }
+    finally {
+      myDataStream.close();
+    }
   }
 
   public byte[] getCode(final int key, final int modifiers) {
@@ -108,6 +111,7 @@ public class TerminalStarter implements TerminalOutputStream {
   }
 
   public void close() {
+    myDataStream.close();
     execute(() -> {
       try {
         myTtyConnector.close();
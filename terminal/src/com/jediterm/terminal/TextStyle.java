@@ -1,21 +1,16 @@
 package com.jediterm.terminal;
 
-import org.jetbrains.annotations.NotNull;
-
-import java.lang.ref.WeakReference;
 import java.util.EnumSet;
-import java.util.WeakHashMap;
 
 public class TextStyle implements Cloneable {
   public static final EnumSet<Option> NO_OPTIONS = EnumSet.noneOf(Option.class);
 
   public static final TextStyle EMPTY = new TextStyle();
 
-  private static final WeakHashMap<TextStyle, WeakReference<TextStyle>> styles = new WeakHashMap<TextStyle, WeakReference<TextStyle>>();
-
   private TerminalColor myForeground;
   private TerminalColor myBackground;
-  private EnumSet<Option> myOptions;
+  private int myOptions; // bit per option
+  private final boolean myReadonly;
 
   public TextStyle() {
     this(null, null, NO_OPTIONS);
@@ -26,65 +21,54 @@ public class TextStyle implements Cloneable {
   }
 
   public TextStyle(final TerminalColor foreground, final TerminalColor background, final EnumSet<Option> options) {
+    this(foreground, background, options, false);
+  }
+
+  private TextStyle(final TerminalColor foreground, final TerminalColor background, final EnumSet<Option> options,
+                    boolean readonly) {
+    this(foreground, background, getOptionBits(options), readonly);
+  }
+
+  private TextStyle(final TerminalColor foreground, final TerminalColor background, int options, boolean readonly) {
     myForeground = foreground;
     myBackground = background;
-    myOptions = options.clone();
+    myOptions = options;
+    myReadonly = readonly;
+  }
+
+  private void checkWritable() {
+    if (myReadonly) {
+      throw new IllegalStateException("Text Style is readonly");
+    }
   }
 
   public void setBackground(TerminalColor background) {
+    checkWritable();
     myBackground = background;
   }
 
   public void setForeground(TerminalColor foreground) {
+    checkWritable();
     myForeground = foreground;
   }
 
   public void setOptions(EnumSet<Option> options) {
-    myOptions = options;
+    checkWritable();
+    myOptions = getOptionBits(options);
   }
 
   public void setOption(final Option opt, final boolean val) {
-    setOptions(opt.set(EnumSet.copyOf(myOptions), val));
+    checkWritable();
+    myOptions = val ? myOptions | opt.getBit() : myOptions & ~opt.getBit();
   }
 
+  /**
+   * Readonly copy is equal to this style and can be safely shared, e.g. as a key of {@link com.jediterm.terminal.model.StyleRegistry}
+   */
   public TextStyle readonlyCopy() {
-    return new TextStyle(myForeground, myBackground, myOptions) {
-      private TextStyle readonly() {
-        throw new IllegalStateException("Text Style is readonly");
-      }
-
-      @Override
-      public void setBackground(TerminalColor background) {
-        readonly();
-      }
-
-      @Override
-      public void setForeground(TerminalColor foreground) {
-        readonly();
-      }
-
-      @Override
-      public void setOptions(EnumSet<Option> options) {
-        readonly();
-      }
-    };
+    return new TextStyle(myForeground, myBackground, myOptions, true);
   }
 
-
-  @NotNull
-  public static TextStyle getCanonicalStyle(TextStyle currentStyle) {
-    final WeakReference<TextStyle> canonRef = styles.get(currentStyle);
-    if (canonRef != null) {
-      final TextStyle canonStyle = canonRef.get();
-      if (canonStyle != null) {
-        return canonStyle;
-      }
-    }
-    styles.put(currentStyle, new WeakReference<TextStyle>(currentStyle));
-    return currentStyle;
-  }
-
-
   public TerminalColor getForeground() {
     return myForeground;
   }
@@ -95,7 +79,7 @@ public class TextStyle implements Cloneable {
 
   @Override
   public TextStyle clone() {
-    return new TextStyle(myForeground, myBackground, myOptions);
+    return new TextStyle(myForeground, myBackground, myOptions, false);
   }
   
   public TextStyle createEmptyWithColors() {
@@ -107,17 +91,14 @@ public class TextStyle implements Cloneable {
   }
 
   public boolean hasOption(final Option option) {
-    return myOptions.contains(option);
+    return (myOptions & option.getBit()) != 0;
   }
 
   @Override
   public int hashCode() {
-    final int PRIME = 31;
-    int result = 1;
-    result = PRIME * result + (myBackground == null ? 0 : myBackground.hashCode());
-    result = PRIME * result + (myForeground == null ? 0 : myForeground.hashCode());
-    result = PRIME * result + (myOptions == null ? 0 : myOptions.hashCode());
-    return result;
+    int result = myForeground != null ? myForeground.hashCode() : 0;
+    result = 31 * result + (myBackground != null ? myBackground.hashCode() : 0);
+    return 31 * result + myOptions;
   }
 
   @Override
@@ -131,44 +112,31 @@ public class TextStyle implements Cloneable {
     if (getClass() != obj.getClass()) {
       return false;
     }
-    final TextStyle other = (TextStyle)obj;
-    if (myBackground == null) {
-      if (other.myBackground != null) {
-        return false;
-      }
-    }
-    else if (!myBackground.equals(other.myBackground)) {
-      return false;
-    }
-    if (myForeground == null) {
-      if (other.myForeground != null) {
-        return false;
-      }
-    }
-    else if (!myForeground.equals(other.myForeground)) {
-      return false;
-    }
-    if (myOptions == null) {
-      if (other.myOptions != null) {
-        return false;
-      }
-    }
-    else if (!myOptions.equals(other.myOptions)) {
-      return false;
-    }
-    return true;
+    TextStyle that = (TextStyle)obj;
+    return myOptions == that.myOptions &&
+           (myForeground != null ? myForeground.equals(that.myForeground) : that.myForeground == null) &&
+           (myBackground != null ? myBackground.equals(that.myBackground) : that.myBackground == null);
   }
 
   public TerminalColor getBackgroundForRun() {
-    return myOptions.contains(Option.INVERSE) ? myForeground : myBackground;
+    return hasOption(Option.INVERSE) ? myForeground : myBackground;
   }
 
   public TerminalColor getForegroundForRun() {
-    return myOptions.contains(Option.INVERSE) ? myBackground : myForeground;
+    return hasOption(Option.INVERSE) ? myBackground : myForeground;
   }
 
   public void clearOptions() {
-    myOptions.clear();
+    checkWritable();
+    myOptions = 0;
+  }
+
+  private static int getOptionBits(EnumSet<Option> options) {
+    int bits = 0;
+    for (Option option : options) {
+      bits |= option.getBit();
+    }
+    return bits;
   }
 
   public enum Option {
@@ -180,6 +148,10 @@ public class TextStyle implements Cloneable {
     UNDERLINED,
     HIDDEN;
 
+    int getBit() {
+      return 1 << ordinal();
+    }
+
     public EnumSet<Option> set(EnumSet<Option> options, boolean val) {
       if (val) {
         options.add(this);
@@ -4,21 +4,31 @@
 package com.jediterm.terminal;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 
 /**
- * Takes data from and sends it back to TTY input and output streams via {@link TtyConnector}
+ * Takes data from and sends it back to TTY input and output streams via {@link TtyConnector}.
+ * <p>
+ * If connector provides UTF-8 bytes, they are decoded here from a reused byte buffer, otherwise chars are read
+ * from connector as they are.
  */
 public class TtyBasedArrayDataStream extends ArrayTerminalDataStream {
-  private TtyConnector myTtyConnector;
+  private static final char REPLACEMENT_CHAR = '\uFFFD';
+
+  protected final TtyConnector myTtyConnector;
+  private final ByteBuffer myByteBuf;
 
   public TtyBasedArrayDataStream(final TtyConnector ttyConnector) {
     super(new char[1024], 0, 0);
     myTtyConnector = ttyConnector;
+    // every byte is decoded to at most one char, so decoded bytes always fit into the char buffer
+    myByteBuf = StandardCharsets.UTF_8.equals(ttyConnector.getCharset()) ? ByteBuffer.allocate(myBuf.length) : null;
   }
 
-  private void fillBuf() throws IOException {
+  protected void fillBuf() throws IOException {
     myOffset = 0;
-    myLength = myTtyConnector.read(myBuf, myOffset, myBuf.length);
+    myLength = readChunk(myBuf);
 
     if (myLength <= 0) {
       myLength = 0;
@@ -26,6 +36,114 @@ public class TtyBasedArrayDataStream extends ArrayTerminalDataStream {
     }
   }
 
+  /**
+   * Blocks until some chars are read from tty into <b>buf</b>, which must be at least as long as the initial buffer.
+   *
+   * @return number of chars read or value <= 0 if there is no more data
+   */
+  protected int readChunk(char[] buf) throws IOException {
+    return myByteBuf != null ? readUtf8(buf) : myTtyConnector.read(buf, 0, buf.length);
+  }
+
+  private int readUtf8(char[] buf) throws IOException {
+    int decoded = 0;
+    while (decoded == 0) {
+      int read = myTtyConnector.read(myByteBuf.array(), myByteBuf.position(), myByteBuf.remaining());
+      if (read <= 0) {
+        if (myByteBuf.position() > 0) {
+          // the stream ended in the middle of a sequence
+          myByteBuf.clear();
+          buf[0] = REPLACEMENT_CHAR;
+          return 1;
+        }
+        return read;
+      }
+      myByteBuf.position(myByteBuf.position() + read);
+      myByteBuf.flip();
+      decoded = decodeUtf8(myByteBuf, buf);
+      // incomplete sequence at the end of the read is kept for the next one
+      myByteBuf.compact();
+    }
+    return decoded;
+  }
+
+  /**
+   * Decodes bytes from <b>src</b> position to its limit into <b>dst</b>. Malformed bytes are replaced with U+FFFD.
+   * Trailing incomplete sequence isn't consumed: src position is left at its first byte.
+   *
+   * @return number of decoded chars
+   */
+  static int decodeUtf8(ByteBuffer src, char[] dst) {
+    byte[] bytes = src.array();
+    int i = src.position();
+    int end = src.limit();
+    int n = 0;
+
+    decoding:
+    while (i < end) {
+      while (bytes[i] >= 0) {
+        dst[n++] = (char)bytes[i++];
+        if (i == end) {
+          break decoding;
+        }
+      }
+
+      int b = bytes[i] & 0xFF;
+      int extra;
+      int cp;
+      if (b >= 0xC2 && b <= 0xDF) {
+        extra = 1;
+        cp = b & 0x1F;
+      }
+      else if (b >= 0xE0 && b <= 0xEF) {
+        extra = 2;
+        cp = b & 0x0F;
+      }
+      else if (b >= 0xF0 && b <= 0xF4) {
+        extra = 3;
+        cp = b & 0x07;
+      }
+      else {
+        dst[n++] = REPLACEMENT_CHAR;
+        i++;
+        continue;
+      }
+
+      boolean malformed = false;
+      for (int k = 1; k <= extra; k++) {
+        if (i + k == end) {
+          break decoding;
+        }
+        int c = bytes[i + k];
+        if ((c & 0xC0) != 0x80) {
+          malformed = true;
+          break;
+        }
+        cp = (cp << 6) | (c & 0x3F);
+      }
+
+      if (malformed ||
+          extra == 2 && (cp < 0x800 || Character.isSurrogate((char)cp)) ||
+          extra == 3 && (cp < Character.MIN_SUPPLEMENTARY_CODE_POINT || cp > Character.MAX_CODE_POINT)) {
+        dst[n++] = REPLACEMENT_CHAR;
+        i++;
+        continue;
+      }
+
+      if (extra == 3) {
+        dst[n++] = Character.highSurrogate(cp);
+        dst[n++] = Character.lowSurrogate(cp);
+      }
+      else {
+        dst[n++] = (char)cp;
+      }
+      i += extra + 1;
+    }
+
+    src.position(i);
+    return n;
+  }
+
   public char getChar() throws IOException {
     if (myLength == 0) {
       fillBuf();
@@ -40,4 +158,4 @@ public class TtyBasedArrayDataStream extends ArrayTerminalDataStream {
 
     return super.readNonControlCharacters(maxChars);
   }
-}
\ No newline at end of file
+}
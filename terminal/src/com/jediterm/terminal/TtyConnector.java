@@ -2,6 +2,7 @@ package com.jediterm.terminal;
 
 import java.awt.*;
 import java.io.IOException;
+import java.nio.charset.Charset;
 
 /**
  * Interface to tty.
@@ -17,6 +18,24 @@ public interface TtyConnector {
 
   int read(char[] buf, int offset, int length) throws IOException;
 
+  /**
+   * Reads raw bytes from tty. Is used instead of {@link #read(char[], int, int)} only if {@link #getCharset()}
+   * returns not null, so that the data stream can decode bytes itself.
+   * <p/>
+   * Connectors that return a charset must override this method, like {@link ProcessTtyConnector} does.
+   */
+  default int read(byte[] buf, int offset, int length) throws IOException {
+    throw new UnsupportedOperationException("Byte reads are not supported by " + getClass().getName());
+  }
+
+  /**
+   * @return charset of bytes returned by {@link #read(byte[], int, int)} or null if only char reads are supported,
+   * a connector that returns a charset must override {@link #read(byte[], int, int)}
+   */
+  default Charset getCharset() {
+    return null;
+  }
+
   void write(byte[] bytes) throws IOException;
 
   boolean isConnected();
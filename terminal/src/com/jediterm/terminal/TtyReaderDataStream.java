@@ -0,0 +1,130 @@
+package com.jediterm.terminal;
+
+import com.jediterm.terminal.util.CharBlockRingBuffer;
+import org.apache.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Reads TTY on a dedicated thread into a bounded ring of char blocks, so that the TTY is drained even when
+ * emulation is slow or waits for the text buffer lock. Emulator thread consumes whole blocks from the ring.
+ * <p/>
+ * The reader thread is stopped by {@link #close()}, a reader blocked in the tty read exits after the connector
+ * is closed.
+ *
+ * @author traff
+ */
+public class TtyReaderDataStream extends TtyBasedArrayDataStream {
+  private static final Logger LOG = Logger.getLogger(TtyReaderDataStream.class);
+
+  private static final int DEFAULT_BLOCK_COUNT = 64;
+
+  private final CharBlockRingBuffer myRing;
+  private Thread myReaderThread; // guarded by this
+  private boolean myHoldsBlock = false;
+  private volatile IOException myReadError;
+
+  public TtyReaderDataStream(TtyConnector ttyConnector) {
+    this(ttyConnector, DEFAULT_BLOCK_COUNT);
+  }
+
+  public TtyReaderDataStream(TtyConnector ttyConnector, int blockCount) {
+    super(ttyConnector);
+    myRing = new CharBlockRingBuffer(blockCount, myBuf.length);
+  }
+
+  @Override
+  protected void fillBuf() throws IOException {
+    startReader();
+
+    if (myHoldsBlock) {
+      myRing.release();
+      myHoldsBlock = false;
+    }
+
+    char[] block;
+    try {
+      block = myRing.nextBlock();
+    }
+    catch (InterruptedException e) {
+      close();
+      throw new InterruptedIOException();
+    }
+
+    int length = block != null ? myRing.blockLength() : -1;
+    if (length <= 0) {
+      // EOF marker stays in the ring, so that all subsequent reads end up here
+      myLength = 0;
+      if (myReadError != null) {
+        throw myReadError;
+      }
+      throw new EOF();
+    }
+
+    myHoldsBlock = true;
+    myBuf = block;
+    myOffset = 0;
+    myLength = length;
+  }
+
+  private synchronized void startReader() {
+    if (myReaderThread == null && !myRing.isClosed()) {
+      myReaderThread = new Thread(this::readLoop, "TtyReader-" + myTtyConnector.getName());
+      myReaderThread.setDaemon(true);
+      myReaderThread.start();
+    }
+  }
+
+  /**
+   * Stops the reader thread. Emulator gets the chars read so far and then EOF.
+   */
+  @Override
+  public synchronized void close() {
+    myRing.close();
+    if (myReaderThread != null) {
+      myReaderThread.interrupt();
+    }
+  }
+
+  private void readLoop() {
+    try {
+      while (!myRing.isClosed()) {
+        char[] block = myRing.nextFreeBlock();
+        int length;
+        try {
+          length = readChunk(block);
+        }
+        catch (IOException e) {
+          myReadError = e;
+          length = -1;
+        }
+        if (myRing.isClosed()) {
+          break;
+        }
+        myRing.publish(length);
+        if (length <= 0) {
+          break;
+        }
+      }
+    }
+    catch (InterruptedException e) {
+      LOG.debug("Tty reader interrupted");
+    }
+  }
+
+  public CharBlockRingBuffer getRingBuffer() {
+    return myRing;
+  }
+
+  /**
+   * @return how many times reader thread had to wait because emulator didn't consume blocks fast enough
+   */
+  public long getReaderWaits() {
+    return myRing.getProducerWaits();
+  }
+
+  public int getPendingBlocks() {
+    return myRing.getPendingBlocks();
+  }
+}
@@ -59,16 +59,27 @@ public abstract class ColorPalette {
     }
   };
 
+  private Color[] myIndexColors; // getIndexColors() creates colors on every call
+
   public abstract Color[] getIndexColors();
 
   public Color getColor(TerminalColor color) {
     if (color.isIndexed()) {
-      return getIndexColors()[color.getIndex()];
+      return getCachedIndexColors()[color.getIndex()];
     } else {
       return color.toAwtColor();
     }
   }
 
+  private Color[] getCachedIndexColors() {
+    Color[] colors = myIndexColors;
+    if (colors == null) {
+      colors = getIndexColors();
+      myIndexColors = colors;
+    }
+    return colors;
+  }
+
   public static TerminalColor getIndexedColor(int index) {
     return (index < 16) ? TerminalColor.index(index) : getXTerm256(index);
   }
@@ -3,126 +3,60 @@
  */
 package com.jediterm.terminal.emulator;
 
-import com.google.common.collect.Lists;
 import com.jediterm.terminal.util.CharUtils;
-import com.jediterm.terminal.TerminalDataStream;
-
-import java.io.IOException;
-import java.util.ArrayList;
 
+/**
+ * Parameters of a control sequence (CSI). An instance is reused by emulator for all sequences,
+ * so it is valid only while the sequence is processed.
+ */
 public class ControlSequence {
   private int myArgc;
 
-  private int[] myArgv;
+  private final int[] myArgv = new int[VtParser.MAX_PARAMS];
 
   private char myFinalChar;
 
-  private ArrayList<Character> myUnhandledChars;
-
-  private boolean myStartsWithQuestionMark = false; // true when CSI ?
-  private boolean myStartsWithMoreMark = false; // true when CSI >
+  private char myPrivateMarker; // one of '<', '=', '>', '?' or 0 if there is no marker
 
-  private final StringBuilder mySequenceString = new StringBuilder();
-
-
-  ControlSequence(final TerminalDataStream channel) throws IOException {
-    myArgv = new int[5];
-    myArgc = 0;
-
-    readControlSequence(channel);
-  }
+  private final char[] myIntermediateChars = new char[VtParser.MAX_INTERMEDIATES];
+  private int myIntermediateCount;
 
-  private void readControlSequence(final TerminalDataStream channel) throws IOException {
-    myArgc = 0;
-    // Read integer arguments
-    int digit = 0;
-    int seenDigit = 0;
-    int pos = -1;
-
-    while (true) {
-      final char b = channel.getChar();
-      mySequenceString.append(b);
-      pos++;
-      if (b == '?' && pos == 0) {
-        myStartsWithQuestionMark = true;
-      }
-      else if (b == '>' && pos == 0) {
-        myStartsWithMoreMark = true;
-      }
-      else if (b == ';') {
-        if (digit > 0) {
-          myArgc++;
-          if (myArgc == myArgv.length) {
-            int[] replacement = new int[myArgv.length * 2];
-            System.arraycopy(myArgv, 0, replacement, 0, myArgv.length);
-            myArgv = replacement;
-          }
-          myArgv[myArgc] = 0;
-          digit = 0;
-        }
-      }
-      else if ('0' <= b && b <= '9') {
-        myArgv[myArgc] = myArgv[myArgc] * 10 + b - '0';
-        digit++;
-        seenDigit = 1;
-      }
-      else if (':' <= b && b <= '?') {
-        addUnhandled(b);
-      }
-      else if (0x40 <= b && b <= 0x7E) {
-        myFinalChar = b;
-        break;
-      }
-      else {
-        addUnhandled(b);
-      }
-    }
-    myArgc += seenDigit;
-  }
+  private CharSequence myRawSequence; // is recorded only in debug mode
 
-  private void addUnhandled(final char b) {
-    if (myUnhandledChars == null) {
-      myUnhandledChars = Lists.newArrayList();
-    }
-    myUnhandledChars.add(b);
+  ControlSequence() {
   }
 
-  public boolean pushBackReordered(final TerminalDataStream channel) throws IOException {
-    if (myUnhandledChars == null) return false;
-    final char[] bytes = new char[1024]; // can't be more than the whole buffer...
-    int i = 0;
-    for (final char b : myUnhandledChars) {
-      bytes[i++] = b;
+  void set(final VtParser parser, final char finalChar) {
+    myArgc = parser.getParamCount();
+    for (int i = 0; i < myArgc; i++) {
+      myArgv[i] = parser.getParam(i);
     }
-    bytes[i++] = (byte)CharUtils.ESC;
-    bytes[i++] = (byte)'[';
 
-    if (myStartsWithQuestionMark) {
-      bytes[i++] = (byte)'?';
+    int intermediateCount = parser.getIntermediateCount();
+    int start = 0;
+    myPrivateMarker = 0;
+    if (intermediateCount > 0 && parser.getIntermediate(0) >= '<') {
+      myPrivateMarker = parser.getIntermediate(0);
+      start = 1;
     }
-    
-    if (myStartsWithMoreMark) {
-      bytes[i++] = (byte)'>';
+    myIntermediateCount = intermediateCount - start;
+    for (int i = start; i < intermediateCount; i++) {
+      myIntermediateChars[i - start] = parser.getIntermediate(i);
     }
 
-    for (int argi = 0; argi < myArgc; argi++) {
-      if (argi != 0) bytes[i++] = ';';
-      String s = Integer.toString(myArgv[argi]);
-      for (int j = 0; j < s.length(); j++) {
-        bytes[i++] = s.charAt(j);
-      }
-    }
-    bytes[i++] = myFinalChar;
-    channel.pushBackBuffer(bytes, i);
-    return true;
+    myFinalChar = finalChar;
+    myRawSequence = parser.getRawSequence();
   }
 
   int getCount() {
     return myArgc;
   }
 
+  /**
+   * @return value of the argument or <b>defaultValue</b> if the argument is omitted or empty
+   */
   final int getArg(final int index, final int defaultValue) {
-    if (index >= myArgc) {
+    if (index >= myArgc || myArgv[index] < 0) {
       return defaultValue;
     }
     return myArgv[index];
@@ -137,29 +71,25 @@ public class ControlSequence {
   public final void appendToBuffer(final StringBuilder sb) {
     sb.append("ESC[");
 
-    if (myStartsWithQuestionMark) {
-      sb.append("?");
-    }
-
-    if (myStartsWithMoreMark) {
-      sb.append(">");
+    if (myPrivateMarker != 0) {
+      sb.append(myPrivateMarker);
     }
 
     String sep = "";
     for (int i = 0; i < myArgc; i++) {
       sb.append(sep);
-      sb.append(myArgv[i]);
+      if (myArgv[i] >= 0) {
+        sb.append(myArgv[i]);
+      }
       sep = ";";
     }
-    sb.append(myFinalChar);
 
-    if (myUnhandledChars != null) {
-      sb.append(" Unhandled:");
-      CharUtils.CharacterType last = CharUtils.CharacterType.NONE;
-      for (final char b : myUnhandledChars) {
-        last = CharUtils.appendChar(sb, last, (char)b);
-      }
+    CharUtils.CharacterType last = CharUtils.CharacterType.NONE;
+    for (int i = 0; i < myIntermediateCount; i++) {
+      last = CharUtils.appendChar(sb, last, myIntermediateChars[i]);
     }
+
+    sb.append(myFinalChar);
   }
 
   @Override
@@ -174,14 +104,25 @@ public class ControlSequence {
   }
 
   public boolean startsWithQuestionMark() {
-    return myStartsWithQuestionMark;
+    return myPrivateMarker == '?';
   }
 
   public boolean startsWithMoreMark() {
-    return myStartsWithMoreMark;
+    return myPrivateMarker == '>';
+  }
+
+  /**
+   * @return true if the sequence has intermediate chars or a private marker other than '?' and '>'.
+   * None of such sequences is supported.
+   */
+  public boolean hasUnhandledChars() {
+    return myIntermediateCount > 0 || (myPrivateMarker != 0 && myPrivateMarker != '?' && myPrivateMarker != '>');
   }
 
+  /**
+   * @return chars of the sequence as they were received in debug mode, otherwise the sequence restored from its parameters
+   */
   public String getSequenceString() {
-    return mySequenceString.toString();
+    return myRawSequence != null ? myRawSequence.toString() : toString();
   }
-}
\ No newline at end of file
+}
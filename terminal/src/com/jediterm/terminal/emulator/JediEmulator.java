@@ -9,6 +9,8 @@ import org.apache.log4j.Logger;
 
 import java.awt.*;
 import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * The main terminal emulator class.
@@ -26,6 +28,14 @@ public class JediEmulator extends DataStreamIteratingEmulator {
   private static int logThrottlerRatio = 100;
   private static int logThrottlerLimit = logThrottlerRatio;
 
+  private final VtParser myParser = new VtParser(new ParserHandler());
+
+  private final ControlSequence myControlSequence = new ControlSequence();
+
+  private final SystemCommandSequence mySystemCommandSequence = new SystemCommandSequence();
+
+  private final Map<Integer, OscHandler> myOscHandlers = new HashMap<Integer, OscHandler>();
+
   @Deprecated
   public JediEmulator(TerminalDataStream dataStream, TerminalOutputStream outputStream, Terminal terminal) {
     super(dataStream, terminal);
@@ -35,8 +45,27 @@ public class JediEmulator extends DataStreamIteratingEmulator {
     super(dataStream, terminal);
   }
 
+  /**
+   * In debug mode chars of every escape sequence are recorded as they are received and are reported
+   * in logs about unhandled sequences. It costs additional copying of every sequence, so it is off by default.
+   */
+  public void setDebugMode(boolean debugMode) {
+    myParser.setRecordRawSequences(debugMode);
+  }
+
+  /**
+   * Registers handler that receives payload of every OSC with the given number instead of the built-in processing
+   */
+  public void registerOscHandler(int command, OscHandler handler) {
+    myOscHandlers.put(command, handler);
+  }
+
   @Override
   public void processChar(char ch, Terminal terminal) throws IOException {
+    myParser.advance(ch);
+  }
+
+  private void processControlChar(char ch, Terminal terminal) {
     switch (ch) {
       case 0:
         break;
@@ -71,46 +100,44 @@ public class JediEmulator extends DataStreamIteratingEmulator {
       case Ascii.HT: // Horizontal Tab (HT) (Ctrl-I)
         terminal.horizontalTab();
         break;
-      case Ascii.ESC: // ESC
-        processEscapeSequence(myDataStream.getChar(), myTerminal);
+      case Ascii.CAN: // Cancel (Ctrl-X) and Substitute (Ctrl-Z) abort a sequence, which is done by parser
+      case Ascii.SUB:
         break;
       default:
-        if (ch <= Ascii.US) {
-          StringBuilder sb = new StringBuilder("Unhandled control character:");
-          CharUtils.appendChar(sb, CharUtils.CharacterType.NONE, ch);
-          unhandledLogThrottler(sb.toString());
-        } else { // Plain characters
-          myDataStream.pushChar(ch);
-          String nonControlCharacters = myDataStream.readNonControlCharacters(terminal.distanceToLineEnd());
-
-          terminal.writeCharacters(nonControlCharacters);
-        }
+        StringBuilder sb = new StringBuilder("Unhandled control character:");
+        CharUtils.appendChar(sb, CharUtils.CharacterType.NONE, ch);
+        unhandledLogThrottler(sb.toString());
         break;
     }
   }
 
-  private void processEscapeSequence(char ch, Terminal terminal) throws IOException {
-    switch (ch) {
-      case '[': // Control Sequence Introducer (CSI)
-        final ControlSequence args = new ControlSequence(myDataStream);
+  private void processPlainCharacters(char ch, Terminal terminal) throws IOException {
+    myDataStream.writeNonControlCharacters(ch, terminal.distanceToLineEnd(), terminal);
+  }
 
-        if (LOG.isDebugEnabled()) {
-          LOG.debug(args.appendTo("Control sequence\nparsed                        :"));
-        }
-        if (!args.pushBackReordered(myDataStream)) {
-          boolean result = processControlSequence(args);
-
-          if (!result) {
-            StringBuilder sb = new StringBuilder();
-            sb.append("Unhandled Control sequence\n");
-            sb.append("parsed                        :");
-            args.appendToBuffer(sb);
-            sb.append('\n');
-            sb.append("bytes read                    :ESC[");
-            LOG.error(sb.toString());
-          }
-        }
-        break;
+  private void processControlSequence(ControlSequence args, Terminal terminal) {
+    if (LOG.isDebugEnabled()) {
+      LOG.debug(args.appendTo("Control sequence\nparsed                        :"));
+    }
+    boolean result = !args.hasUnhandledChars() && processControlSequence(args);
+
+    if (!result) {
+      StringBuilder sb = new StringBuilder();
+      sb.append("Unhandled Control sequence\n");
+      sb.append("parsed                        :");
+      args.appendToBuffer(sb);
+      if (myParser.getRawSequence() != null) {
+        sb.append('\n');
+        sb.append("chars read                    :");
+        String chars = args.getSequenceString();
+        CharUtils.appendBuf(sb, chars.toCharArray(), 0, chars.length());
+      }
+      LOG.error(sb.toString());
+    }
+  }
+
+  private void processEscapeSequence(char ch, Terminal terminal) {
+    switch (ch) {
       case 'D': //Index (IND)
         terminal.index();
         break;
@@ -129,13 +156,7 @@ public class JediEmulator extends DataStreamIteratingEmulator {
       case 'O':
         terminal.singleShiftSelect(3); //Single Shift Select of G3 Character Set (SS3). This affects next character only.
         break;
-      case ']': // Operating System Command (OSC)
-        // xterm uses it to set parameters like windows title
-        final SystemCommandSequence command = new SystemCommandSequence(myDataStream);
-
-        if (!operatingSystemCommand(command)) {
-          LOG.error("Error processing OSC " + command.getSequenceString());
-        }
+      case '\\': //String Terminator (ST), the string itself is already processed
         break;
       case '6':
         unsupported("Back Index (DECBI), VT420 and up");
@@ -176,24 +197,22 @@ public class JediEmulator extends DataStreamIteratingEmulator {
       case '~': //Invoke the G1 Character Set as GR - locking shift 1, right (LS1R)
         myTerminal.mapCharsetToGR(1);
         break;
-      case '#':
-      case '(':
-      case ')':
-      case '*':
-      case '+':
-      case '$':
-      case '@':
-      case '%':
-      case '.':
-      case '/':
-      case ' ':
-        processTwoCharSequence(ch, terminal);
-        break;
       default:
         unsupported(ch);
     }
   }
 
+  private void processSystemCommandSequence(SystemCommandSequence command) {
+    if (command.isOverflow()) {
+      unsupported("OSC longer than " + SystemCommandSequence.MAX_LENGTH + " chars");
+      return;
+    }
+    // xterm uses it to set parameters like windows title
+    if (!operatingSystemCommand(command)) {
+      LOG.error("Error processing OSC " + command.getSequenceString());
+    }
+  }
+
   private boolean operatingSystemCommand(SystemCommandSequence args) {
     Integer i = args.getIntAt(0);
 
@@ -219,8 +238,7 @@ public class JediEmulator extends DataStreamIteratingEmulator {
     return false;
   }
 
-  private void processTwoCharSequence(char ch, Terminal terminal) throws IOException {
-    char secondCh = myDataStream.getChar();
+  private void processTwoCharSequence(char ch, char secondCh, Terminal terminal) {
     switch (ch) {
       case ' ':
         switch (secondCh) {
@@ -286,8 +304,7 @@ public class JediEmulator extends DataStreamIteratingEmulator {
       case '/':
         terminal.designateCharacterSet(3, secondCh); //Designate G3 Character set (VT300)
         break;
-      case '$':
-      case '@':
+      default:
         unsupported(ch, secondCh);
     }
   }
@@ -782,12 +799,7 @@ public class JediEmulator extends DataStreamIteratingEmulator {
     while (i < argCount) {
       int step = 1;
 
-      final int arg = args.getArg(i, -1);
-      if (arg == -1) {
-        LOG.error("Error in processing char attributes, arg " + i);
-        i++;
-        continue;
-      }
+      final int arg = args.getArg(i, 0); // empty parameter is the same as 0
 
       switch (arg) {
         case 0: //Normal (default)
@@ -955,5 +967,104 @@ public class JediEmulator extends DataStreamIteratingEmulator {
   public void setMouseMode(MouseMode mouseMode) {
     myTerminal.setMouseMode(mouseMode);
   }
-}
 
+  private class ParserHandler implements VtParser.Handler {
+    private boolean myOscNumberExpected;
+    private int myOscNumber; // -1 until the first digit
+
+    private OscHandler myOscHandler; // receives payload of the current OSC if it is registered for its number
+
+    @Override
+    public void print(char c) throws IOException {
+      processPlainCharacters(c, myTerminal);
+    }
+
+    @Override
+    public void execute(char c) {
+      processControlChar(c, myTerminal);
+    }
+
+    @Override
+    public void escDispatch(VtParser parser, char finalChar) {
+      if (parser.isOverflow() || parser.getIntermediateCount() > 1) {
+        unsupported("Escape sequence with too many intermediate characters");
+      }
+      else if (parser.getIntermediateCount() == 1) {
+        processTwoCharSequence(parser.getIntermediate(0), finalChar, myTerminal);
+      }
+      else {
+        processEscapeSequence(finalChar, myTerminal);
+      }
+    }
+
+    @Override
+    public void csiDispatch(VtParser parser, char finalChar) {
+      myControlSequence.set(parser, finalChar);
+      processControlSequence(myControlSequence, myTerminal);
+    }
+
+    @Override
+    public void oscStart() {
+      mySystemCommandSequence.reset();
+      myOscNumberExpected = !myOscHandlers.isEmpty();
+      myOscNumber = -1;
+    }
+
+    @Override
+    public void oscPut(char c) {
+      if (myOscHandler != null) {
+        myOscHandler.put(c);
+        return;
+      }
+      if (myOscNumberExpected) {
+        if (c >= '0' && c <= '9' && myOscNumber < 10000) {
+          myOscNumber = Math.max(myOscNumber, 0) * 10 + c - '0';
+        }
+        else {
+          myOscNumberExpected = false;
+          myOscHandler = c == ';' && myOscNumber >= 0 ? myOscHandlers.get(myOscNumber) : null;
+          if (myOscHandler != null) {
+            myOscHandler.start(myTerminal);
+            return;
+          }
+        }
+      }
+      mySystemCommandSequence.append(c);
+    }
+
+    @Override
+    public void oscEnd() {
+      if (myOscHandler != null) {
+        OscHandler handler = myOscHandler;
+        myOscHandler = null;
+        handler.end(myTerminal);
+        return;
+      }
+      mySystemCommandSequence.setRawSequence(myParser.getRawSequence());
+      processSystemCommandSequence(mySystemCommandSequence);
+    }
+
+    @Override
+    public void oscAbort() {
+      if (myOscHandler != null) {
+        OscHandler handler = myOscHandler;
+        myOscHandler = null;
+        handler.abort(myTerminal);
+      }
+      mySystemCommandSequence.reset();
+    }
+
+    @Override
+    public void hook(VtParser parser, char finalChar) {
+      unsupported("Device Control String (DCS) " + finalChar);
+    }
+
+    @Override
+    public void put(char c) {
+    }
+
+    @Override
+    public void unhook() {
+    }
+  }
+}
@@ -0,0 +1,31 @@
+package com.jediterm.terminal.emulator;
+
+import com.jediterm.terminal.Terminal;
+
+/**
+ * Handles operating system commands (OSC) with a particular number, see {@link JediEmulator#registerOscHandler}.
+ * Payload, i.e. everything after the first ';', is passed char by char as it is received, so it isn't
+ * buffered by emulator and can be of any size (e.g. base64 encoded clipboard data of OSC 52).
+ *
+ * @author traff
+ */
+public interface OscHandler {
+  /**
+   * Called when the command number and the separator are received.
+   */
+  void start(Terminal terminal);
+
+  void put(char c);
+
+  /**
+   * Called when the command is terminated by BEL or ST (ESC \\).
+   */
+  void end(Terminal terminal);
+
+  /**
+   * Called instead of {@link #end(Terminal)} when the command is interrupted by CAN or SUB, the received data
+   * should be discarded.
+   */
+  default void abort(Terminal terminal) {
+  }
+}
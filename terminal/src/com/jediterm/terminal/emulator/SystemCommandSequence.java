@@ -1,83 +1,108 @@
 package com.jediterm.terminal.emulator;
 
-import com.google.common.base.Ascii;
-import com.google.common.collect.Lists;
-import com.jediterm.terminal.TerminalDataStream;
-
-import java.io.IOException;
-import java.util.List;
+import com.jediterm.terminal.util.Util;
 
 /**
+ * Operating system command (OSC) arguments separated by ';'. An instance is reused by emulator for all commands,
+ * so it is valid only while the command is processed. Arguments are converted to strings only on request.
+ * At most {@link #MAX_LENGTH} chars are kept, longer commands are marked as overflown and should be ignored.
+ * Commands with large payloads are handled by {@link OscHandler} instead.
+ *
  * @author traff
  */
 public class SystemCommandSequence {
-  private final List<Object> myArgs = Lists.newArrayList();
+  public static final int MAX_LENGTH = 4096;
 
   private final StringBuilder mySequenceString = new StringBuilder();
 
-  public SystemCommandSequence(TerminalDataStream dataStream) throws IOException {
-    readSystemCommandSequence(dataStream);
+  /**
+   * Start offsets of arguments in {@link #mySequenceString}, each argument ends right before the next separator
+   */
+  private int[] myArgStarts = new int[4];
+  private int myArgCount;
+  private boolean myOverflow;
+
+  private CharSequence myRawSequence; // is recorded only in debug mode
+
+  SystemCommandSequence() {
+    reset();
   }
 
-  private void readSystemCommandSequence(TerminalDataStream stream) throws IOException {
-    boolean isNumber = true;
-    int number = 0;
-    StringBuilder string = new StringBuilder();
-
-    while (true) {
-      final char b = stream.getChar();
-      mySequenceString.append(b);
-
-      if (b == ';' || isEnd(b)) {
-        if (isNumber) {
-          myArgs.add(number);
-        }
-        else {
-          myArgs.add(string.toString());
-        }
-        if (isEnd(b)) {
-          break;
-        }
-        isNumber = true;
-        number = 0;
-        string = new StringBuilder();
-      }
-      else if (isNumber) {
-        if ('0' <= b && b <= '9') {
-          number = number * 10 + b - '0';
-        }
-        else {
-          isNumber = false;
-        }
-        string.append(b);
-      }
-      else {
-        string.append(b);
+  public SystemCommandSequence(CharSequence sequence) {
+    this();
+    for (int i = 0; i < sequence.length(); i++) {
+      append(sequence.charAt(i));
+    }
+  }
+
+  void reset() {
+    mySequenceString.setLength(0);
+    myArgStarts[0] = 0;
+    myArgCount = 1;
+    myOverflow = false;
+    myRawSequence = null;
+  }
+
+  void append(char c) {
+    if (mySequenceString.length() == MAX_LENGTH) {
+      myOverflow = true;
+      return;
+    }
+    mySequenceString.append(c);
+    if (c == ';') {
+      if (myArgCount == myArgStarts.length) {
+        myArgStarts = Util.copyOf(myArgStarts, myArgCount * 2);
       }
+      myArgStarts[myArgCount++] = mySequenceString.length();
     }
   }
 
-  private static boolean isEnd(char b) {
-    return b == Ascii.BEL || b == 0x9c;
+  /**
+   * @return true if the command is longer than {@link #MAX_LENGTH} and its tail is lost
+   */
+  public boolean isOverflow() {
+    return myOverflow;
+  }
+
+  void setRawSequence(CharSequence rawSequence) {
+    myRawSequence = rawSequence;
+  }
+
+  private int getArgEnd(int i) {
+    return i + 1 < myArgCount ? myArgStarts[i + 1] - 1 : mySequenceString.length();
+  }
+
+  /**
+   * @return -1 if the argument isn't a number
+   */
+  private int parseInt(int i) {
+    int number = 0;
+    for (int pos = myArgStarts[i], end = getArgEnd(i); pos < end; pos++) {
+      char b = mySequenceString.charAt(pos);
+      if (b < '0' || b > '9') {
+        return -1;
+      }
+      number = number * 10 + b - '0';
+    }
+    return number;
   }
 
   public String getStringAt(int i) {
-    if (i>=myArgs.size()) {
+    if (i >= myArgCount || parseInt(i) >= 0) {
       return null;
     }
-    Object val = myArgs.get(i);
-    return val instanceof String ? (String)val : null;
+    return mySequenceString.substring(myArgStarts[i], getArgEnd(i));
   }
 
   public Integer getIntAt(int i) {
-    if (i>=myArgs.size()) {
+    if (i >= myArgCount) {
       return null;
     }
-    Object val = myArgs.get(i);
-    return val instanceof Integer? (Integer)val : null;
+    int value = parseInt(i);
+    return value >= 0 ? value : null;
   }
 
   public String getSequenceString() {
-    return mySequenceString.toString();
+    return myRawSequence != null ? myRawSequence.toString() : mySequenceString.toString();
   }
 }
@@ -0,0 +1,411 @@
+package com.jediterm.terminal.emulator;
+
+import java.io.IOException;
+
+/**
+ * Table-driven parser of escape sequences modelled on the DEC ANSI parser state diagram
+ * (see http://vt100.net/emu/dec_ansi_parser).
+ * <p/>
+ * Parser is fed by one char at a time with {@link #advance(char)} and keeps all its state between calls,
+ * so a sequence can be split at any position between reads. Transitions for 7-bit chars are taken from
+ * precomputed tables. C1 controls aren't recognized, with the exception of 0x9c which terminates
+ * OSC, DCS and SOS/PM/APC strings. Other chars above 0x7f are printed in ground state, passed to OSC and DCS
+ * strings as data and ignored in all other states.
+ *
+ * @author traff
+ */
+public class VtParser {
+  public interface Handler {
+    /**
+     * Graphic char in ground state
+     */
+    void print(char c) throws IOException;
+
+    /**
+     * C0 control char, either in ground state or inside of an escape or control sequence
+     */
+    void execute(char c) throws IOException;
+
+    /**
+     * End of an escape sequence. Intermediate chars are available from parser.
+     */
+    void escDispatch(VtParser parser, char finalChar) throws IOException;
+
+    /**
+     * End of a control sequence (CSI). Parameters, private marker and intermediate chars are available from parser.
+     */
+    void csiDispatch(VtParser parser, char finalChar) throws IOException;
+
+    void oscStart();
+
+    void oscPut(char c);
+
+    void oscEnd() throws IOException;
+
+    /**
+     * OSC string is interrupted by CAN or SUB, the received data should be discarded
+     */
+    void oscAbort();
+
+    /**
+     * Start of a device control string (DCS) passthrough. Parameters are available from parser.
+     */
+    void hook(VtParser parser, char finalChar);
+
+    void put(char c);
+
+    void unhook();
+  }
+
+  public static final int MAX_PARAMS = 32;
+  public static final int MAX_INTERMEDIATES = 2;
+  private static final int MAX_PARAM_VALUE = 99999;
+
+  // states
+  static final int GROUND = 0;
+  static final int ESCAPE = 1;
+  static final int ESCAPE_INTERMEDIATE = 2;
+  static final int CSI_ENTRY = 3;
+  static final int CSI_PARAM = 4;
+  static final int CSI_INTERMEDIATE = 5;
+  static final int CSI_IGNORE = 6;
+  static final int OSC_STRING = 7;
+  static final int DCS_ENTRY = 8;
+  static final int DCS_PARAM = 9;
+  static final int DCS_INTERMEDIATE = 10;
+  static final int DCS_PASSTHROUGH = 11;
+  static final int DCS_IGNORE = 12;
+  static final int SOS_PM_APC_STRING = 13;
+  private static final int STATE_COUNT = 14;
+  /**
+   * Event inside of a state, entry and exit actions aren't performed
+   */
+  private static final int STAY = 15;
+
+  // actions
+  private static final int NONE = 0;
+  private static final int PRINT = 1;
+  private static final int EXECUTE = 2;
+  private static final int COLLECT = 3;
+  private static final int PARAM = 4;
+  private static final int ESC_DISPATCH = 5;
+  private static final int CSI_DISPATCH = 6;
+  private static final int PUT = 7;
+  private static final int OSC_PUT = 8;
+
+  private static final char ST = 0x9c;
+  private static final char CAN = 0x18;
+  private static final char SUB = 0x1a;
+
+  /**
+   * For every state and 7-bit char: action in the high 4 bits, next state in the low 4 bits
+   */
+  private static final byte[][] TRANSITIONS = new byte[STATE_COUNT][0x80];
+
+  static {
+    for (int state = 0; state < STATE_COUNT; state++) {
+      set(state, 0x00, 0x7f, NONE, STAY);
+    }
+
+    setC0(GROUND, EXECUTE);
+    // DEL is printed in ground state, as it is included into runs of non-control chars anyway
+    set(GROUND, 0x20, 0x7f, PRINT, STAY);
+
+    setC0(ESCAPE, EXECUTE);
+    set(ESCAPE, 0x20, 0x2f, COLLECT, ESCAPE_INTERMEDIATE);
+    set(ESCAPE, 0x30, 0x7e, ESC_DISPATCH, GROUND);
+    set(ESCAPE, 'P', 'P', NONE, DCS_ENTRY);
+    set(ESCAPE, 'X', 'X', NONE, SOS_PM_APC_STRING);
+    set(ESCAPE, '[', '[', NONE, CSI_ENTRY);
+    set(ESCAPE, ']', ']', NONE, OSC_STRING);
+    set(ESCAPE, '^', '_', NONE, SOS_PM_APC_STRING);
+
+    setC0(ESCAPE_INTERMEDIATE, EXECUTE);
+    set(ESCAPE_INTERMEDIATE, 0x20, 0x2f, COLLECT, STAY);
+    set(ESCAPE_INTERMEDIATE, 0x30, 0x7e, ESC_DISPATCH, GROUND);
+
+    setC0(CSI_ENTRY, EXECUTE);
+    set(CSI_ENTRY, 0x20, 0x2f, COLLECT, CSI_INTERMEDIATE);
+    set(CSI_ENTRY, 0x30, 0x39, PARAM, CSI_PARAM);
+    set(CSI_ENTRY, ':', ':', NONE, CSI_IGNORE);
+    set(CSI_ENTRY, ';', ';', PARAM, CSI_PARAM);
+    set(CSI_ENTRY, 0x3c, 0x3f, COLLECT, CSI_PARAM);
+    set(CSI_ENTRY, 0x40, 0x7e, CSI_DISPATCH, GROUND);
+
+    setC0(CSI_PARAM, EXECUTE);
+    set(CSI_PARAM, 0x20, 0x2f, COLLECT, CSI_INTERMEDIATE);
+    set(CSI_PARAM, 0x30, 0x39, PARAM, STAY);
+    set(CSI_PARAM, ':', ':', NONE, CSI_IGNORE);
+    set(CSI_PARAM, ';', ';', PARAM, STAY);
+    set(CSI_PARAM, 0x3c, 0x3f, NONE, CSI_IGNORE);
+    set(CSI_PARAM, 0x40, 0x7e, CSI_DISPATCH, GROUND);
+
+    setC0(CSI_INTERMEDIATE, EXECUTE);
+    set(CSI_INTERMEDIATE, 0x20, 0x2f, COLLECT, STAY);
+    set(CSI_INTERMEDIATE, 0x30, 0x3f, NONE, CSI_IGNORE);
+    set(CSI_INTERMEDIATE, 0x40, 0x7e, CSI_DISPATCH, GROUND);
+
+    setC0(CSI_IGNORE, EXECUTE);
+    set(CSI_IGNORE, 0x40, 0x7e, NONE, GROUND);
+
+    set(DCS_ENTRY, 0x20, 0x2f, COLLECT, DCS_INTERMEDIATE);
+    set(DCS_ENTRY, 0x30, 0x39, PARAM, DCS_PARAM);
+    set(DCS_ENTRY, ':', ':', NONE, DCS_IGNORE);
+    set(DCS_ENTRY, ';', ';', PARAM, DCS_PARAM);
+    set(DCS_ENTRY, 0x3c, 0x3f, COLLECT, DCS_PARAM);
+    set(DCS_ENTRY, 0x40, 0x7e, NONE, DCS_PASSTHROUGH);
+
+    set(DCS_PARAM, 0x20, 0x2f, COLLECT, DCS_INTERMEDIATE);
+    set(DCS_PARAM, 0x30, 0x39, PARAM, STAY);
+    set(DCS_PARAM, ':', ':', NONE, DCS_IGNORE);
+    set(DCS_PARAM, ';', ';', PARAM, STAY);
+    set(DCS_PARAM, 0x3c, 0x3f, NONE, DCS_IGNORE);
+    set(DCS_PARAM, 0x40, 0x7e, NONE, DCS_PASSTHROUGH);
+
+    set(DCS_INTERMEDIATE, 0x20, 0x2f, COLLECT, STAY);
+    set(DCS_INTERMEDIATE, 0x30, 0x3f, NONE, DCS_IGNORE);
+    set(DCS_INTERMEDIATE, 0x40, 0x7e, NONE, DCS_PASSTHROUGH);
+
+    setC0(DCS_PASSTHROUGH, PUT);
+    set(DCS_PASSTHROUGH, 0x20, 0x7e, PUT, STAY);
+
+    set(OSC_STRING, 0x20, 0x7f, OSC_PUT, STAY);
+    // xterm also accepts BEL as OSC terminator
+    set(OSC_STRING, 0x07, 0x07, NONE, GROUND);
+
+    // transitions from anywhere
+    for (int state = 0; state < STATE_COUNT; state++) {
+      set(state, CAN, CAN, EXECUTE, GROUND);
+      set(state, SUB, SUB, EXECUTE, GROUND);
+      set(state, 0x1b, 0x1b, NONE, ESCAPE);
+    }
+  }
+
+  private static void setC0(int state, int action) {
+    set(state, 0x00, 0x1f, action, STAY);
+  }
+
+  private static void set(int state, int from, int to, int action, int nextState) {
+    for (int c = from; c <= to; c++) {
+      TRANSITIONS[state][c] = (byte)(action << 4 | nextState);
+    }
+  }
+
+  private final Handler myHandler;
+
+  private int myState = GROUND;
+
+  private final int[] myParams = new int[MAX_PARAMS];
+  private int myParamCount;
+  private boolean myParamsOverflow;
+
+  private final char[] myIntermediates = new char[MAX_INTERMEDIATES];
+  private int myIntermediateCount;
+  private boolean myIntermediatesOverflow;
+
+  private StringBuilder myRawSequence; // not null only in debug mode
+
+  static final int MAX_RAW_SEQUENCE_LENGTH = 4096;
+
+  public VtParser(Handler handler) {
+    myHandler = handler;
+  }
+
+  public void advance(char c) throws IOException {
+    int transition;
+    if (c < 0x80) {
+      transition = TRANSITIONS[myState][c];
+    }
+    else {
+      transition = nonAsciiTransition(c);
+    }
+
+    int action = (transition >>> 4) & 0x0f;
+    int nextState = transition & 0x0f;
+
+    if (myRawSequence != null && nextState != ESCAPE && (myState != GROUND || nextState != STAY)
+        && myRawSequence.length() < MAX_RAW_SEQUENCE_LENGTH) {
+      myRawSequence.append(c);
+    }
+
+    if (nextState == STAY) {
+      perform(action, c);
+    }
+    else {
+      exit(myState, c);
+      perform(action, c);
+      myState = nextState;
+      enter(nextState, c);
+    }
+
+    if (myRawSequence != null && nextState == ESCAPE) {
+      // previous sequence is completely processed at this point
+      myRawSequence.setLength(0);
+      myRawSequence.append(c);
+    }
+  }
+
+  private int nonAsciiTransition(char c) {
+    switch (myState) {
+      case GROUND:
+        return PRINT << 4 | STAY;
+      case OSC_STRING:
+        return c == ST ? NONE << 4 | GROUND : OSC_PUT << 4 | STAY;
+      case DCS_PASSTHROUGH:
+        return c == ST ? NONE << 4 | GROUND : PUT << 4 | STAY;
+      case DCS_IGNORE:
+      case SOS_PM_APC_STRING:
+        return c == ST ? NONE << 4 | GROUND : NONE << 4 | STAY;
+      default:
+        return NONE << 4 | STAY;
+    }
+  }
+
+  private void perform(int action, char c) throws IOException {
+    switch (action) {
+      case NONE:
+        break;
+      case PRINT:
+        myHandler.print(c);
+        break;
+      case EXECUTE:
+        myHandler.execute(c);
+        break;
+      case COLLECT:
+        if (myIntermediateCount < MAX_INTERMEDIATES) {
+          myIntermediates[myIntermediateCount++] = c;
+        }
+        else {
+          myIntermediatesOverflow = true;
+        }
+        break;
+      case PARAM:
+        param(c);
+        break;
+      case ESC_DISPATCH:
+        myHandler.escDispatch(this, c);
+        break;
+      case CSI_DISPATCH:
+        myHandler.csiDispatch(this, c);
+        break;
+      case PUT:
+        myHandler.put(c);
+        break;
+      case OSC_PUT:
+        myHandler.oscPut(c);
+        break;
+    }
+  }
+
+  private void param(char c) {
+    if (myParamCount == 0) {
+      myParams[0] = -1;
+      myParamCount = 1;
+    }
+    if (c == ';') {
+      if (myParamCount < MAX_PARAMS) {
+        myParams[myParamCount++] = -1;
+      }
+      else {
+        myParamsOverflow = true;
+      }
+    }
+    else if (!myParamsOverflow) {
+      int value = Math.max(myParams[myParamCount - 1], 0) * 10 + c - '0';
+      myParams[myParamCount - 1] = Math.min(value, MAX_PARAM_VALUE);
+    }
+  }
+
+  private void exit(int state, char c) throws IOException {
+    if (state == OSC_STRING) {
+      if (c == CAN || c == SUB) {
+        myHandler.oscAbort();
+      }
+      else {
+        myHandler.oscEnd();
+      }
+    }
+    else if (state == DCS_PASSTHROUGH) {
+      myHandler.unhook();
+    }
+  }
+
+  private void enter(int state, char c) {
+    switch (state) {
+      case ESCAPE:
+      case CSI_ENTRY:
+      case DCS_ENTRY:
+        clear();
+        break;
+      case OSC_STRING:
+        myHandler.oscStart();
+        break;
+      case DCS_PASSTHROUGH:
+        myHandler.hook(this, c);
+        break;
+    }
+  }
+
+  private void clear() {
+    myParamCount = 0;
+    myParamsOverflow = false;
+    myIntermediateCount = 0;
+    myIntermediatesOverflow = false;
+  }
+
+  /**
+   * Debug mode: chars of every sequence are recorded as they are received, see {@link #getRawSequence()}.
+   * At most {@link #MAX_RAW_SEQUENCE_LENGTH} chars of a sequence are recorded.
+   */
+  public void setRecordRawSequences(boolean record) {
+    myRawSequence = record ? new StringBuilder() : null;
+  }
+
+  /**
+   * @return chars of the current sequence starting with ESC or null if they aren't recorded
+   */
+  public CharSequence getRawSequence() {
+    return myRawSequence;
+  }
+
+  public boolean isInGroundState() {
+    return myState == GROUND;
+  }
+
+  int getState() {
+    return myState;
+  }
+
+  /**
+   * @return number of parameters of the current sequence including empty ones
+   */
+  public int getParamCount() {
+    return myParamCount;
+  }
+
+  /**
+   * @return parameter value or -1 if the parameter is empty
+   */
+  public int getParam(int index) {
+    return myParams[index];
+  }
+
+  /**
+   * @return number of collected intermediate chars of the current sequence. For CSI and DCS it includes
+   * private marker (one of '<', '=', '>', '?') if it precedes parameters.
+   */
+  public int getIntermediateCount() {
+    return myIntermediateCount;
+  }
+
+  public char getIntermediate(int index) {
+    return myIntermediates[index];
+  }
+
+  /**
+   * @return true if the current sequence had more parameters or intermediate chars than parser keeps
+   */
+  public boolean isOverflow() {
+    return myParamsOverflow || myIntermediatesOverflow;
+  }
+}
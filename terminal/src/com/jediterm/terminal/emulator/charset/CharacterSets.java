@@ -177,9 +177,17 @@ public final class CharacterSets {
    * @return the mapped character.
    */
   public static char getChar(char original, GraphicSet gl, GraphicSet gr) {
-    Object[] mapping = getMapping(original, gl, gr);
+    int ch;
+    if (isControl(original)) {
+      ch = (Integer) getMapping(original, gl, gr)[0];
+    }
+    else if (original >= GL_START && original <= GL_END) {
+      ch = gl.map(original, original - GL_START);
+    }
+    else {
+      ch = original;
+    }
 
-    int ch = (Integer) mapping[0];
     if (ch > 0) {
       return (char)ch;
     }
@@ -187,6 +195,14 @@ public final class CharacterSets {
     return CharUtils.NUL_CHAR;
   }
 
+  /**
+   * @return <code>true</code> if the given character is a C0 or C1 control, which is mapped
+   *         regardless of the designated graphic sets.
+   */
+  static boolean isControl(char c) {
+    return c <= C0_END || (c >= C1_START && c <= C1_END);
+  }
+
   /**
    * Returns the name for the given character using the given graphic sets GL
    * and GR.
@@ -79,6 +79,45 @@ public class GraphicSetState {
     return CharacterSets.getChar(ch, getGL(), getGR());
   }
 
+  /**
+   * Maps the given characters in place, consuming the GL override if there is one.
+   *
+   * @param buf    the characters to map;
+   * @param offset the offset of the first character;
+   * @param length the number of characters to map.
+   */
+  public void mapInPlace(char[] buf, int offset, int length) {
+    int end = offset + length;
+    int i = offset;
+    if (i < end && myGlOverride != null) {
+      buf[i] = map(buf[i]);
+      i++;
+    }
+
+    if (isIdentityMapping()) {
+      // only controls have to be mapped, plain ASCII and everything above C1 stays as is
+      for (; i < end; i++) {
+        char ch = buf[i];
+        if (CharacterSets.isControl(ch)) {
+          buf[i] = CharacterSets.getChar(ch, myGL, myGR);
+        }
+      }
+    }
+    else {
+      for (; i < end; i++) {
+        buf[i] = CharacterSets.getChar(buf[i], myGL, myGR);
+      }
+    }
+  }
+
+  /**
+   * Returns <code>true</code> if printable characters are written as is, i.e. ASCII is selected to GL
+   * and there is no single shift pending. GR isn't used for mapping, so it doesn't matter.
+   */
+  public boolean isIdentityMapping() {
+    return myGlOverride == null && myGL.getDesignation() == CharacterSet.ASCII;
+  }
+
   /**
    * Overrides the GL graphic set for the next written character.
    *
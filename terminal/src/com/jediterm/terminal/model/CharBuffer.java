@@ -15,6 +15,9 @@ public class CharBuffer implements Iterable<Character>, CharSequence {
 
   public final static CharBuffer EMPTY = new CharBuffer(new char[0], 0, 0);
 
+  private static volatile char[] ourNuls = new char[0];
+  private static volatile char[] ourSpaces = new char[0];
+
   private final char[] myBuf;
   private final int myStart;
   private final int myLength;
@@ -46,6 +49,36 @@ public class CharBuffer implements Iterable<Character>, CharSequence {
     Arrays.fill(myBuf, c);
   }
 
+  /**
+   * @return buffer of <b>count</b> NUL chars, its array is shared by all such buffers and must not be modified
+   */
+  @NotNull
+  public static CharBuffer nuls(int count) {
+    char[] buf = ourNuls;
+    if (buf.length < count) {
+      buf = ourNuls = createFilledArray(CharUtils.NUL_CHAR, Math.max(count, buf.length * 2));
+    }
+    return new CharBuffer(buf, 0, count);
+  }
+
+  /**
+   * @return buffer of <b>count</b> spaces, its array is shared by all such buffers and must not be modified
+   */
+  @NotNull
+  public static CharBuffer spaces(int count) {
+    char[] buf = ourSpaces;
+    if (buf.length < count) {
+      buf = ourSpaces = createFilledArray(CharUtils.EMPTY_CHAR, Math.max(count, buf.length * 2));
+    }
+    return new CharBuffer(buf, 0, count);
+  }
+
+  private static char[] createFilledArray(char c, int length) {
+    char[] buf = new char[length];
+    Arrays.fill(buf, c);
+    return buf;
+  }
+
   public CharBuffer(@NotNull String str) {
     this(str.toCharArray(), 0, str.length());
   }
@@ -89,11 +122,11 @@ public class CharBuffer implements Iterable<Character>, CharSequence {
   }
 
   public boolean isNul() {
-    return myLength > 0 && myBuf[0] == CharUtils.NUL_CHAR;
+    return myLength > 0 && myBuf[myStart] == CharUtils.NUL_CHAR;
   }
 
   public void unNullify() {
-    Arrays.fill(myBuf, CharUtils.EMPTY_CHAR);
+    Arrays.fill(myBuf, myStart, myStart + myLength, CharUtils.EMPTY_CHAR);
   }
 
   @Override
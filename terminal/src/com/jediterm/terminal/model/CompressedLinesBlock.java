@@ -0,0 +1,130 @@
+package com.jediterm.terminal.model;
+
+import com.jediterm.terminal.TextStyle;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.io.*;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Immutable block of history lines packed into a deflated byte array. Styles are stored in a table of the block and
+ * cells refer to them by index, so the styles (including hyperlinks) are the same objects after decompression.
+ * The array can be moved to a {@link ScrollbackFile}, then the block keeps only its offset and the style table.
+ *
+ * @author traff
+ */
+final class CompressedLinesBlock {
+  private final byte[] myData; // null if the data is in the file
+  private final TextStyle[] myStyles;
+  private final int myLineCount;
+  private final ScrollbackFile myFile;
+  private final long myOffset;
+  private final int myLength;
+
+  private CompressedLinesBlock(@Nullable byte[] data, @NotNull TextStyle[] styles, int lineCount,
+                               @Nullable ScrollbackFile file, long offset, int length) {
+    myData = data;
+    myStyles = styles;
+    myLineCount = lineCount;
+    myFile = file;
+    myOffset = offset;
+    myLength = length;
+  }
+
+  @NotNull
+  static CompressedLinesBlock compress(@NotNull TerminalLine[] lines) {
+    Map<TextStyle, Integer> styleIds = new IdentityHashMap<>();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new DeflaterOutputStream(bytes, deflater)))) {
+      for (TerminalLine line : lines) {
+        line.writeTo(out, styleIds);
+      }
+    }
+    catch (IOException e) {
+      throw new IllegalStateException(e); // can't happen for in-memory streams
+    }
+    finally {
+      deflater.end();
+    }
+
+    TextStyle[] styles = new TextStyle[styleIds.size()];
+    for (Map.Entry<TextStyle, Integer> entry : styleIds.entrySet()) {
+      styles[entry.getValue()] = entry.getKey();
+    }
+    byte[] data = bytes.toByteArray();
+    return new CompressedLinesBlock(data, styles, lines.length, null, 0, data.length);
+  }
+
+  /**
+   * @return block that reads its data from the file, or this block if it can't be written there
+   */
+  @NotNull
+  CompressedLinesBlock moveTo(@NotNull ScrollbackFile file) {
+    if (myData == null) {
+      return this;
+    }
+    long offset = file.append(myData);
+    return offset >= 0 ? new CompressedLinesBlock(null, myStyles, myLineCount, file, offset, myLength) : this;
+  }
+
+  boolean isInMemory() {
+    return myData != null;
+  }
+
+  @NotNull
+  TerminalLine[] decompress() {
+    byte[] data = myData != null ? myData : myFile.read(myOffset, myLength);
+    TerminalLine[] lines = new TerminalLine[myLineCount];
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(data))))) {
+      for (int i = 0; i < myLineCount; i++) {
+        lines[i] = TerminalLine.readFrom(in, myStyles);
+      }
+    }
+    catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return lines;
+  }
+
+  int getLineCount() {
+    return myLineCount;
+  }
+
+  int getCompressedSize() {
+    return myLength;
+  }
+
+  /**
+   * @return approximate count of bytes retained in memory by the block
+   */
+  int estimateSize() {
+    return 48 + 16 + myStyles.length * 4 + (myData != null ? 16 + myData.length : 0);
+  }
+
+  static void writeVarInt(@NotNull DataOutput out, int value) throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.writeByte((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.writeByte(value);
+  }
+
+  static int readVarInt(@NotNull DataInput in) throws IOException {
+    int value = 0;
+    int shift = 0;
+    int b;
+    do {
+      b = in.readByte();
+      value |= (b & 0x7F) << shift;
+      shift += 7;
+    }
+    while ((b & 0x80) != 0);
+    return value;
+  }
+}
@@ -0,0 +1,82 @@
+package com.jediterm.terminal.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Limit of memory retained by history of several terminals, e.g. of all tabs. When the limit is exceeded,
+ * the oldest lines of the terminals with the largest history are removed.
+ *
+ * @author traff
+ */
+public class HistoryMemoryBudget {
+  private final long myMaxBytes;
+  private final AtomicLong myUsedBytes = new AtomicLong();
+  private final List<TerminalTextBuffer> myBuffers = new CopyOnWriteArrayList<>();
+
+  public HistoryMemoryBudget(long maxBytes) {
+    myMaxBytes = maxBytes;
+  }
+
+  public long getMaxBytes() {
+    return myMaxBytes;
+  }
+
+  /**
+   * @return approximate count of bytes retained by history of all terminals
+   */
+  public long getUsedBytes() {
+    return myUsedBytes.get();
+  }
+
+  void changeUsedBytes(long delta) {
+    myUsedBytes.addAndGet(delta);
+  }
+
+  void register(@NotNull TerminalTextBuffer buffer) {
+    myBuffers.add(buffer);
+  }
+
+  void unregister(@NotNull TerminalTextBuffer buffer) {
+    myBuffers.remove(buffer);
+  }
+
+  boolean isExceeded() {
+    return myUsedBytes.get() > myMaxBytes;
+  }
+
+  /**
+   * Removes the oldest history lines, starting with the largest history. Terminals that are locked by other
+   * threads are skipped, so that this doesn't wait for them.
+   */
+  void reclaim() {
+    List<TerminalTextBuffer> buffers = new ArrayList<>(myBuffers);
+    // history of other terminals grows while sorting, so the sizes are read once to keep the order consistent
+    Map<TerminalTextBuffer, Long> sizes = new IdentityHashMap<>();
+    for (TerminalTextBuffer buffer : buffers) {
+      sizes.put(buffer, buffer.getHistoryRetainedBytes());
+    }
+    buffers.sort(Comparator.comparingLong((TerminalTextBuffer buffer) -> sizes.get(buffer)).reversed());
+    for (TerminalTextBuffer buffer : buffers) {
+      long excess = myUsedBytes.get() - myMaxBytes;
+      if (excess <= 0) {
+        break;
+      }
+      if (buffer.tryLock()) {
+        try {
+          buffer.removeOldestHistoryLines(excess);
+        }
+        finally {
+          buffer.unlock();
+        }
+      }
+    }
+  }
+}
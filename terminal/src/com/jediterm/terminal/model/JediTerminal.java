@@ -116,17 +116,24 @@ public class JediTerminal implements Terminal, TerminalMouseListener, TerminalCo
 
   @Override
   public void writeCharacters(String string) {
-    writeDecodedCharacters(decodeUsingGraphicalState(string));
+    char[] chars = string.toCharArray();
+    writeCharacters(chars, 0, chars.length);
   }
 
-  private void writeDecodedCharacters(char[] string) {
+  @Override
+  public void writeCharacters(char[] buf, int offset, int length) {
+    myGraphicSetState.mapInPlace(buf, offset, length);
+    writeDecodedCharacters(buf, offset, length);
+  }
+
+  private void writeDecodedCharacters(char[] buf, int offset, int length) {
     myTerminalTextBuffer.lock();
     try {
       wrapLines();
       scrollY();
 
-      if (string.length != 0) {
-        CharBuffer characters = newCharBuf(string);
+      if (length != 0) {
+        CharBuffer characters = newCharBuf(buf, offset, length);
         myTerminalTextBuffer.writeString(myCursorX, myCursorY, characters);
         myCursorX += characters.length();
       }
@@ -142,16 +149,6 @@ public class JediTerminal implements Terminal, TerminalMouseListener, TerminalCo
     writeCharacters(new String(bytesOfChar, 0, 2));
   }
 
-
-  private char[] decodeUsingGraphicalState(String string) {
-    StringBuilder result = new StringBuilder();
-    for (char c : string.toCharArray()) {
-      result.append(myGraphicSetState.map(c));
-    }
-
-    return result.toString().toCharArray();
-  }
-
   public void writeUnwrappedString(String string) {
     int length = string.length();
     int off = 0;
@@ -269,13 +266,13 @@ public class JediTerminal implements Terminal, TerminalMouseListener, TerminalCo
     if (myCursorX >= myTerminalWidth) {
       return;
     }
-    int length = myTerminalTextBuffer.getLine(myCursorY - 1).getText().length();
+    int length = myTerminalTextBuffer.getLine(myCursorY - 1).getTextLength();
     int stop = myTabulator.nextTab(myCursorX);
     myCursorX = Math.max(myCursorX, length);
     if (myCursorX < stop) {
       char[] chars = new char[stop - myCursorX];
       Arrays.fill(chars, CharUtils.EMPTY_CHAR);
-      writeDecodedCharacters(chars);
+      writeDecodedCharacters(chars, 0, chars.length);
     } else {
       myCursorX = stop;
     }
@@ -1016,6 +1013,16 @@ public class JediTerminal implements Terminal, TerminalMouseListener, TerminalCo
     void sizeUpdated(int termWidth, int termHeight, int cursorY);
   }
 
+  @Override
+  public void beginBatch() {
+    myTerminalTextBuffer.beginBatch();
+  }
+
+  @Override
+  public void endBatch() {
+    myTerminalTextBuffer.endBatch();
+  }
+
   public Dimension resize(final Dimension pendingResize, final RequestOrigin origin) {
     final int oldHeight = myTerminalHeight;
     if (pendingResize.width <= MIN_WIDTH) {
@@ -1046,7 +1053,7 @@ public class JediTerminal implements Terminal, TerminalMouseListener, TerminalCo
       Arrays.fill(chars, c);
 
       for (int row = 1; row <= myTerminalHeight; row++) {
-        myTerminalTextBuffer.writeString(0, row, newCharBuf(chars));
+        myTerminalTextBuffer.writeString(0, row, newCharBuf(chars, 0, chars.length));
       }
     } finally {
       myTerminalTextBuffer.unlock();
@@ -1054,19 +1061,17 @@ public class JediTerminal implements Terminal, TerminalMouseListener, TerminalCo
   }
 
   @NotNull
-  private CharBuffer newCharBuf(char[] str) {
-    int dwcCount = CharUtils.countDoubleWidthCharacters(str, 0, str.length, myDisplay.ambiguousCharsAreDoubleWidth());
-
-    char[] buf;
+  private CharBuffer newCharBuf(char[] str, int offset, int length) {
+    int dwcCount = CharUtils.countDoubleWidthCharacters(str, offset, length, myDisplay.ambiguousCharsAreDoubleWidth());
 
     if (dwcCount > 0) {
       // Leave gaps for the private use "DWC" character, which simply tells the rendering code to advance one cell.
-      buf = new char[str.length + dwcCount];
+      char[] buf = new char[length + dwcCount];
 
       int j = 0;
-      for (int i = 0; i < str.length; i++) {
+      for (int i = offset; i < offset + length; i++) {
         buf[j] = str[i];
-        int codePoint = Character.codePointAt(str, i);
+        int codePoint = Character.codePointAt(str, i, offset + length);
         boolean doubleWidthCharacter = CharUtils.isDoubleWidthCharacter(codePoint, myDisplay.ambiguousCharsAreDoubleWidth());
         if (doubleWidthCharacter) {
           j++;
@@ -1074,10 +1079,10 @@ public class JediTerminal implements Terminal, TerminalMouseListener, TerminalCo
         }
         j++;
       }
-    } else {
-      buf = str;
+      return new CharBuffer(buf, 0, buf.length);
     }
-    return new CharBuffer(buf, 0, buf.length);
+    // the line copies the chars, so the slice of the caller's buffer can be passed as is
+    return new CharBuffer(str, offset, length);
   }
 
   @Override
@@ -1,6 +1,5 @@
 package com.jediterm.terminal.model;
 
-import com.google.common.collect.Lists;
 import com.jediterm.terminal.StyledTextConsumer;
 import com.jediterm.terminal.TextStyle;
 import com.jediterm.terminal.model.TerminalLine.TextEntry;
@@ -9,47 +8,87 @@ import org.apache.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import javax.swing.*;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 /**
- * Holds styled characters lines
+ * Holds styled characters lines.
+ * <p/>
+ * A buffer that compresses old lines keeps the recent lines as live {@link TerminalLine}s, older lines are sealed
+ * into {@link CompressedLinesBlock}s and are decompressed on demand, the last decompressed blocks are cached.
+ * Hyperlinks found in the decompressed lines are written back to the block when it's evicted from the cache.
+ * If such a buffer has no limit, old blocks are moved to a {@link ScrollbackFile}, it is deleted by {@link #dispose()}.
+ * <p/>
+ * The buffer accounts approximate count of bytes retained by its lines, a line is measured when it's added. Besides
+ * the limit of lines count, the oldest lines are dropped to keep retained bytes in {@link #setMaxBytes(long)}.
  */
 public class LinesBuffer {
   private static final Logger LOG = Logger.getLogger(LinesBuffer.class);
 
   public static final int DEFAULT_MAX_LINES_COUNT = 1000;
 
+  static final int HOT_LINES_COUNT = 512;
+  static final int BLOCK_LINES_COUNT = 256;
+  private static final int DECOMPRESSED_BLOCKS_CACHE_SIZE = 8;
+  static final int IN_MEMORY_BLOCKS_COUNT = 64;
+
   // negative number means no limit
   private int myBufferMaxLinesCount = DEFAULT_MAX_LINES_COUNT;
 
-  private ArrayList<TerminalLine> myLines = Lists.newArrayList();
+  // lines are kept in a circular array, so that lines can be added and removed at both ends in O(1)
+  private TerminalLine[] myLines = new TerminalLine[16];
+  private int myStart = 0; // index of the first line in myLines
+  private int myCount = 0; // count of live lines, they go after the compressed ones
+
+  private final boolean myCompressOldLines;
+  private final List<CompressedLinesBlock> myBlocks = new ArrayList<>();
+  private int myFirstBlockOffset = 0; // lines of the first block that were removed
+  private int myCompressedCount = 0;
+  private ScrollbackFile myScrollbackFile;
+  private int myBlocksInFile = 0; // first blocks are in the file
+
+  private long myRemovedTopLinesCount = 0;
+
+  private long myRetainedBytes = 0;
+  private long myMaxBytes = -1; // negative number means no limit
+  private HistoryMemoryBudget myMemoryBudget;
+  private final Map<CompressedLinesBlock, TerminalLine[]> myDecompressedBlocks =
+    new LinkedHashMap<CompressedLinesBlock, TerminalLine[]>(16, 0.75f, true) {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<CompressedLinesBlock, TerminalLine[]> eldest) {
+        if (size() > DECOMPRESSED_BLOCKS_CACHE_SIZE) {
+          storeChanges(myBlocks.indexOf(eldest.getKey()), eldest.getValue());
+          return true;
+        }
+        return false;
+      }
+    };
 
   @Nullable
   private final TextProcessing myTextProcessing;
 
   public LinesBuffer(@Nullable TextProcessing textProcessing) {
-    myTextProcessing = textProcessing;
+    this(DEFAULT_MAX_LINES_COUNT, textProcessing);
   }
 
   public LinesBuffer(int bufferMaxLinesCount, @Nullable TextProcessing textProcessing) {
+    this(bufferMaxLinesCount, false, textProcessing);
+  }
+
+  public LinesBuffer(int bufferMaxLinesCount, boolean compressOldLines, @Nullable TextProcessing textProcessing) {
     myBufferMaxLinesCount = bufferMaxLinesCount;
+    myCompressOldLines = compressOldLines;
     myTextProcessing = textProcessing;
   }
 
   public synchronized String getLines() {
     final StringBuilder sb = new StringBuilder();
 
-    boolean first = true;
-
-    for (TerminalLine line : myLines) {
-      if (!first) {
+    for (int i = 0; i < getLineCount(); i++) {
+      if (i > 0) {
         sb.append("\n");
       }
 
-      sb.append(line.getText());
-      first = false;
+      sb.append(getLine(i).getText());
     }
 
     return sb.toString();
@@ -65,119 +104,403 @@ public class LinesBuffer {
     addLine(new TerminalLine(entry));
   }
 
-  private synchronized void addLine(@NotNull TerminalLine line) {
-    if (myBufferMaxLinesCount > 0 && myLines.size() >= myBufferMaxLinesCount) {
-      removeTopLines(1);
+  /**
+   * @return the line dropped from the top of the full buffer, if any
+   */
+  @Nullable
+  private synchronized TerminalLine addLine(@NotNull TerminalLine line) {
+    TerminalLine evicted = null;
+    if (myBufferMaxLinesCount > 0 && getLineCount() >= myBufferMaxLinesCount) {
+      evicted = myCompressedCount == 0 ? lineAt(0) : null;
+      removeTopLines(getLineCount() - myBufferMaxLinesCount + 1);
     }
 
-    myLines.add(line);
+    ensureCapacity(myCount + 1);
+    myLines[index(myCount)] = line;
+    myCount++;
+    lineAdded(line);
+
+    if (myCompressOldLines) {
+      compressOldLines();
+    }
+    if (myMaxBytes >= 0 && myRetainedBytes > myMaxBytes) {
+      removeOldestLines(myRetainedBytes - myMaxBytes);
+    }
+    return evicted;
   }
 
-  public synchronized int getLineCount() {
-    return myLines.size();
+  private void lineAdded(@NotNull TerminalLine line) {
+    line.myAccountedSize = line.estimateSize();
+    changeRetainedBytes(line.myAccountedSize);
   }
 
-  public synchronized void removeTopLines(int count) {
-    if (count >= myLines.size()) { // remove all lines
-      myLines = Lists.newArrayList();
-    } else {
-      myLines = Lists.newArrayList(myLines.subList(count, myLines.size()));
+  private void changeRetainedBytes(long delta) {
+    myRetainedBytes += delta;
+    if (myMemoryBudget != null) {
+      myMemoryBudget.changeUsedBytes(delta);
     }
   }
 
-  public String getLineText(int row) {
-    TerminalLine line = getLine(row);
+  /**
+   * @return approximate count of bytes retained by the lines
+   */
+  public synchronized long getRetainedBytes() {
+    return myRetainedBytes;
+  }
 
-    return line.getText();
+  /**
+   * @param maxBytes negative number means no limit
+   */
+  public synchronized void setMaxBytes(long maxBytes) {
+    myMaxBytes = maxBytes;
+    if (myMaxBytes >= 0 && myRetainedBytes > myMaxBytes) {
+      removeOldestLines(myRetainedBytes - myMaxBytes);
+    }
   }
 
-  public synchronized void insertLines(int y, int count, int lastLine, @NotNull TextEntry filler) {
-    LinesBuffer tail = new LinesBuffer(myTextProcessing);
+  /**
+   * Retained bytes of the buffer are added to the budget, the budget can remove the oldest lines
+   */
+  public synchronized void setMemoryBudget(@Nullable HistoryMemoryBudget budget) {
+    if (myMemoryBudget != null) {
+      myMemoryBudget.changeUsedBytes(-myRetainedBytes);
+    }
+    myMemoryBudget = budget;
+    if (myMemoryBudget != null) {
+      myMemoryBudget.changeUsedBytes(myRetainedBytes);
+    }
+  }
 
-    if (lastLine < getLineCount() - 1) {
-      moveBottomLinesTo(getLineCount() - lastLine - 1, tail);
+  /**
+   * Removes the oldest lines until at least <b>bytes</b> are released or the buffer is empty. Compressed lines are
+   * removed by whole blocks.
+   *
+   * @return released bytes
+   */
+  public synchronized long removeOldestLines(long bytes) {
+    long retained = myRetainedBytes;
+    while (retained - myRetainedBytes < bytes && getLineCount() > 0) {
+      removeTopLines(myCompressedCount > 0 ? myBlocks.get(0).getLineCount() - myFirstBlockOffset : 1);
     }
+    return retained - myRetainedBytes;
+  }
+
+  private void compressOldLines() {
+    while (myCount >= HOT_LINES_COUNT + BLOCK_LINES_COUNT) {
+      TerminalLine[] lines = new TerminalLine[BLOCK_LINES_COUNT];
+      for (int i = 0; i < lines.length; i++) {
+        lines[i] = lineAt(i);
+        myLines[index(i)] = null;
+        changeRetainedBytes(-lines[i].myAccountedSize);
+      }
+      myStart = index(lines.length);
+      myCount -= lines.length;
 
-    LinesBuffer head = new LinesBuffer(myTextProcessing);
-    if (y > 0) {
-      moveTopLinesTo(y, head);
+      CompressedLinesBlock block = CompressedLinesBlock.compress(lines);
+      myBlocks.add(block);
+      myCompressedCount += lines.length;
+      changeRetainedBytes(block.estimateSize());
     }
 
-    for (int i = 0; i < count; i++) {
-      head.addNewLine(filler);
+    if (myBufferMaxLinesCount < 0) {
+      moveOldBlocksToFile();
     }
+  }
 
-    head.moveBottomLinesTo(head.getLineCount(), this);
+  private void moveOldBlocksToFile() {
+    while (myBlocks.size() - myBlocksInFile > IN_MEMORY_BLOCKS_COUNT) {
+      if (myScrollbackFile == null) {
+        myScrollbackFile = new ScrollbackFile();
+      }
+      TerminalLine[] lines = myDecompressedBlocks.remove(myBlocks.get(myBlocksInFile));
+      if (lines != null) {
+        storeChanges(myBlocksInFile, lines);
+      }
+      CompressedLinesBlock block = myBlocks.get(myBlocksInFile);
+      CompressedLinesBlock moved = block.moveTo(myScrollbackFile);
+      if (moved == block) {
+        break; // the file isn't writable, keep blocks in memory
+      }
+      myBlocks.set(myBlocksInFile, moved);
+      changeRetainedBytes(moved.estimateSize() - block.estimateSize());
+      myBlocksInFile++;
+    }
+  }
 
-    removeBottomLines(count);
+  /**
+   * Compresses decompressed lines of the block at <b>index</b> again, if they were changed since decompression,
+   * e.g. hyperlinks were found in them
+   */
+  private void storeChanges(int index, @NotNull TerminalLine[] lines) {
+    if (index < 0 || !isChangedSinceRead(lines)) {
+      return;
+    }
+    CompressedLinesBlock block = myBlocks.get(index);
+    CompressedLinesBlock updated = CompressedLinesBlock.compress(lines);
+    if (!block.isInMemory()) {
+      updated = updated.moveTo(myScrollbackFile);
+    }
+    myBlocks.set(index, updated);
+    changeRetainedBytes(updated.estimateSize() - block.estimateSize());
+  }
 
-    tail.moveTopLinesTo(tail.getLineCount(), this);
+  private static boolean isChangedSinceRead(@NotNull TerminalLine[] lines) {
+    for (TerminalLine line : lines) {
+      if (line.isChangedSinceRead()) {
+        return true;
+      }
+    }
+    return false;
   }
 
-  public synchronized LinesBuffer deleteLines(int y, int count, int lastLine, @NotNull TextEntry filler) {
-    LinesBuffer tail = new LinesBuffer(myTextProcessing);
+  @NotNull
+  private TerminalLine[] getDecompressedLines(@NotNull CompressedLinesBlock block) {
+    TerminalLine[] lines = myDecompressedBlocks.get(block);
+    if (lines == null) {
+      lines = block.decompress();
+      myDecompressedBlocks.put(block, lines);
+    }
+    return lines;
+  }
 
-    if (lastLine < getLineCount() - 1) {
-      moveBottomLinesTo(getLineCount() - lastLine - 1, tail);
+  /**
+   * Makes the lines starting from <b>row</b> live, so that they can be modified or moved
+   *
+   * @return index of the row among live lines
+   */
+  private int makeLive(int row) {
+    while (row < myCompressedCount) {
+      CompressedLinesBlock block = myBlocks.remove(myBlocks.size() - 1);
+      TerminalLine[] lines = getDecompressedLines(block);
+      myDecompressedBlocks.remove(block);
+      changeRetainedBytes(-block.estimateSize());
+
+      int first = myBlocks.isEmpty() ? myFirstBlockOffset : 0;
+      for (int i = lines.length - 1; i >= first; i--) {
+        addLiveLineFirst(lines[i]);
+      }
+      myCompressedCount -= lines.length - first;
+      if (myBlocks.isEmpty()) {
+        myFirstBlockOffset = 0;
+      }
+      myBlocksInFile = Math.min(myBlocksInFile, myBlocks.size());
     }
+    return row - myCompressedCount;
+  }
+
+  private void addLineFirst(@NotNull TerminalLine line) {
+    makeLive(0);
+    addLiveLineFirst(line);
+  }
 
-    LinesBuffer head = new LinesBuffer(myTextProcessing);
-    if (y > 0) {
-      moveTopLinesTo(y, head);
+  private void addLiveLineFirst(@NotNull TerminalLine line) {
+    ensureCapacity(myCount + 1);
+    myStart = index(myLines.length - 1);
+    myLines[myStart] = line;
+    myCount++;
+    lineAdded(line);
+  }
+
+  private int index(int row) {
+    return (myStart + row) & (myLines.length - 1);
+  }
+
+  @NotNull
+  private TerminalLine lineAt(int row) {
+    return myLines[index(row)];
+  }
+
+  private void ensureCapacity(int capacity) {
+    if (capacity > myLines.length) {
+      int newLength = myLines.length;
+      while (newLength < capacity) {
+        newLength *= 2;
+      }
+      TerminalLine[] lines = new TerminalLine[newLength];
+      for (int i = 0; i < myCount; i++) {
+        lines[i] = lineAt(i);
+      }
+      myLines = lines;
+      myStart = 0;
     }
+  }
 
-    int toRemove = Math.min(count, getLineCount());
+  public synchronized int getLineCount() {
+    return myCompressedCount + myCount;
+  }
 
-    LinesBuffer removed = new LinesBuffer(myTextProcessing);
-    moveTopLinesTo(toRemove, removed);
+  /**
+   * @return count of lines removed from the top of the buffer, the sum of it and the row of a line doesn't change
+   * while the line is in the buffer
+   */
+  public synchronized long getRemovedTopLinesCount() {
+    return myRemovedTopLinesCount;
+  }
 
-    head.moveBottomLinesTo(head.getLineCount(), this);
+  public synchronized void removeTopLines(int count) {
+    myRemovedTopLinesCount += Math.max(0, Math.min(count, getLineCount()));
+    int compressed = Math.min(count, myCompressedCount);
+    if (compressed > 0) {
+      myCompressedCount -= compressed;
+      myFirstBlockOffset += compressed;
+      while (!myBlocks.isEmpty() && myFirstBlockOffset >= myBlocks.get(0).getLineCount()) {
+        myFirstBlockOffset -= myBlocks.get(0).getLineCount();
+        CompressedLinesBlock block = myBlocks.remove(0);
+        myDecompressedBlocks.remove(block);
+        changeRetainedBytes(-block.estimateSize());
+        myBlocksInFile = Math.max(0, myBlocksInFile - 1);
+      }
+      count -= compressed;
+    }
 
-    for (int i = 0; i < toRemove; i++) {
-      addNewLine(filler);
+    count = Math.min(count, myCount);
+    for (int i = 0; i < count; i++) {
+      changeRetainedBytes(-lineAt(i).myAccountedSize);
+      myLines[index(i)] = null;
     }
+    myStart = index(count);
+    myCount -= count;
+  }
 
-    tail.moveTopLinesTo(tail.getLineCount(), this);
+  public String getLineText(int row) {
+    TerminalLine line = getLine(row);
 
+    return line.getText();
+  }
+
+  /**
+   * Inserts blank lines at <b>y</b>, lines of the region [y, lastLine] are moved down and the lines pushed out of
+   * the region are reused as the blank lines.
+   */
+  public synchronized void insertLines(int y, int count, int lastLine, @NotNull TextEntry filler) {
+    int end = Math.min(lastLine, getLineCount() - 1) + 1;
+    if (y >= end || count <= 0) {
+      return;
+    }
+    count = Math.min(count, end - y);
+    int liveY = makeLive(y);
+    end -= y - liveY;
+    y = liveY;
+
+    rotate(y, end - count, end);
+
+    for (int i = y; i < y + count; i++) {
+      lineAt(i).clear(filler);
+    }
+  }
+
+  public synchronized LinesBuffer deleteLines(int y, int count, int lastLine, @NotNull TextEntry filler) {
+    LinesBuffer removed = new LinesBuffer(myTextProcessing);
+    deleteLines(y, count, lastLine, filler, removed);
     return removed;
   }
 
+  /**
+   * Deletes lines at <b>y</b>, lines of the region [y, lastLine] are moved up and blank lines are added at the bottom
+   * of the region. Deleted lines are moved to <b>removedLinesTarget</b>, or reused as the blank lines if it is null.
+   */
+  public synchronized void deleteLines(int y, int count, int lastLine, @NotNull TextEntry filler,
+                                       @Nullable LinesBuffer removedLinesTarget) {
+    int end = Math.min(lastLine, getLineCount() - 1) + 1;
+    if (y >= end || count <= 0) {
+      return;
+    }
+    count = Math.min(count, end - y);
+    int liveY = makeLive(y);
+    end -= y - liveY;
+    y = liveY;
+
+    rotate(y, y + count, end);
+
+    for (int i = end - count; i < end; i++) {
+      TerminalLine line = lineAt(i);
+      if (removedLinesTarget != null) {
+        changeRetainedBytes(-line.myAccountedSize);
+        TerminalLine evicted = removedLinesTarget.addLine(line);
+        line = evicted != null ? evicted : new TerminalLine();
+        myLines[index(i)] = line;
+        line.clear(filler);
+        lineAdded(line);
+      }
+      else {
+        line.clear(filler);
+      }
+    }
+  }
+
+  /**
+   * Rotates lines of [from, to) so that the line at <b>middle</b> becomes the first one
+   */
+  private void rotate(int from, int middle, int to) {
+    reverse(from, middle);
+    reverse(middle, to);
+    reverse(from, to);
+  }
+
+  private void reverse(int from, int to) {
+    for (int i = from, j = to - 1; i < j; i++, j--) {
+      int a = index(i);
+      int b = index(j);
+      TerminalLine line = myLines[a];
+      myLines[a] = myLines[b];
+      myLines[b] = line;
+    }
+  }
+
   public synchronized void writeString(int x, int y, CharBuffer str, @NotNull TextStyle style) {
-    TerminalLine line = getLine(y);
+    TerminalLine line = getLiveLine(y);
 
     line.writeString(x, str, style);
 
     if (myTextProcessing != null) {
-      SwingUtilities.invokeLater(() -> {
-        myTextProcessing.processHyperlinks(line);
-      });
+      myTextProcessing.scheduleHyperlinks(line);
     }
   }
 
   public synchronized void clearLines(int startRow, int endRow, @NotNull TextEntry filler) {
     for (int i = startRow; i <= endRow; i++) {
-      getLine(i).clear(filler);
+      getLiveLine(i).clear(filler);
     }
   }
 
   // used for reset, style not needed here (reset as well)
   public synchronized void clearAll() {
-    myLines.clear();
+    myRemovedTopLinesCount += getLineCount();
+    Arrays.fill(myLines, null);
+    myStart = 0;
+    myCount = 0;
+    myBlocks.clear();
+    myDecompressedBlocks.clear();
+    myFirstBlockOffset = 0;
+    myCompressedCount = 0;
+    myBlocksInFile = 0;
+    changeRetainedBytes(-myRetainedBytes);
+    if (myScrollbackFile != null) {
+      myScrollbackFile.close();
+      myScrollbackFile = null;
+    }
+  }
+
+  /**
+   * Releases the lines and deletes the scrollback file
+   */
+  public synchronized void dispose() {
+    clearAll();
   }
 
   public synchronized void deleteCharacters(int x, int y, int count, @NotNull TextStyle style) {
-    TerminalLine line = getLine(y);
+    TerminalLine line = getLiveLine(y);
     line.deleteCharacters(x, count, style);
   }
 
   public synchronized void insertBlankCharacters(final int x, final int y, final int count, final int maxLen, @NotNull TextStyle style) {
-    TerminalLine line = getLine(y);
+    TerminalLine line = getLiveLine(y);
     line.insertBlankCharacters(x, count, maxLen, style);
   }
 
   public synchronized void clearArea(int leftX, int topY, int rightX, int bottomY, @NotNull TextStyle style) {
     for (int y = topY; y < bottomY; y++) {
-      TerminalLine line = getLine(y);
+      TerminalLine line = getLiveLine(y);
       line.clearArea(leftX, rightX, style);
     }
   }
@@ -193,35 +516,32 @@ public class LinesBuffer {
     if (firstLine<0) {
       throw new IllegalArgumentException("firstLine=" + firstLine + ", should be >0");
     }
-    for (int y = firstLine; y < Math.min(firstLine + count, myLines.size()); y++) {
-      myLines.get(y).process(y, consumer, startRow);
+    for (int y = firstLine; y < Math.min(firstLine + count, getLineCount()); y++) {
+      getLine(y).process(y, consumer, startRow);
     }
   }
 
   public synchronized void moveTopLinesTo(int count, final @NotNull LinesBuffer buffer) {
     count = Math.min(count, getLineCount());
-    buffer.addLines(myLines.subList(0, count));
+    for (int i = 0; i < count; i++) {
+      buffer.addLine(getLine(i));
+    }
     removeTopLines(count);
   }
 
+  /**
+   * Appends lines, the oldest lines are dropped if the buffer is bounded and gets full
+   */
   public synchronized void addLines(@NotNull List<TerminalLine> lines) {
-    if (myBufferMaxLinesCount > 0) {
-      // adding more lines than max size
-      if (lines.size() >= myBufferMaxLinesCount) {
-        int index = lines.size() - myBufferMaxLinesCount;
-        myLines = Lists.newArrayList(lines.subList(index, lines.size()));
-        return;
-      }
-
-      int count = myLines.size() + lines.size();
-      if (count >= myBufferMaxLinesCount) {
-        removeTopLines(count - myBufferMaxLinesCount);
-      }
+    for (TerminalLine line : lines) {
+      addLine(line);
     }
-
-    myLines.addAll(lines);
   }
 
+  /**
+   * Compressed lines are decompressed on demand, changes of such a line (e.g. found hyperlinks) are stored only
+   * when its block is evicted from the cache
+   */
   @NotNull
   public synchronized TerminalLine getLine(int row) {
     if (row<0) {
@@ -233,31 +553,53 @@ public class LinesBuffer {
       addLine(TerminalLine.createEmpty());
     }
 
-    return myLines.get(row);
+    if (row < myCompressedCount) {
+      row += myFirstBlockOffset;
+      return getDecompressedLines(myBlocks.get(row / BLOCK_LINES_COUNT))[row % BLOCK_LINES_COUNT];
+    }
+    return lineAt(row - myCompressedCount);
+  }
+
+  @NotNull
+  private TerminalLine getLiveLine(int row) {
+    TerminalLine line = getLine(row);
+    return row < myCompressedCount ? lineAt(makeLive(row)) : line;
   }
 
   public synchronized void moveBottomLinesTo(int count, final @NotNull LinesBuffer buffer) {
     count = Math.min(count, getLineCount());
-    buffer.addLinesFirst(myLines.subList(getLineCount() - count, getLineCount()));
+    makeLive(getLineCount() - count);
+    for (int i = myCount - 1; i >= myCount - count; i--) {
+      buffer.addLineFirst(lineAt(i));
+    }
 
     removeBottomLines(count);
   }
 
-  private synchronized void addLinesFirst(@NotNull List<TerminalLine> lines) {
-    List<TerminalLine> list = Lists.newArrayList(lines);
-    list.addAll(myLines);
-    myLines = Lists.newArrayList(list);
+  private synchronized void removeBottomLines(int count) {
+    makeLive(getLineCount() - count);
+    for (int i = myCount - count; i < myCount; i++) {
+      changeRetainedBytes(-lineAt(i).myAccountedSize);
+      myLines[index(i)] = null;
+    }
+    myCount -= count;
   }
 
-  private synchronized void removeBottomLines(int count) {
-    myLines = Lists.newArrayList(myLines.subList(0, getLineCount() - count));
+  private void removeLine(int row) {
+    row = makeLive(row);
+    changeRetainedBytes(-lineAt(row).myAccountedSize);
+    for (int i = row; i < myCount - 1; i++) {
+      myLines[index(i)] = lineAt(i + 1);
+    }
+    myLines[index(myCount - 1)] = null;
+    myCount--;
   }
 
-  public int removeBottomEmptyLines(int ind, int maxCount) {
+  public synchronized int removeBottomEmptyLines(int ind, int maxCount) {
     int i = 0;
-    while ((maxCount - i) > 0 && (ind >= myLines.size() || myLines.get(ind).isNul())) {
-      if (ind < myLines.size()) {
-        myLines.remove(ind);
+    while ((maxCount - i) > 0 && (ind >= getLineCount() || getLine(ind).isNul())) {
+      if (ind < getLineCount()) {
+        removeLine(ind);
       }
       ind--;
       i++;
@@ -0,0 +1,115 @@
+package com.jediterm.terminal.model;
+
+import org.apache.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Append-only temporary file for history blocks that are evicted from memory. The file is mapped into memory by
+ * segments, a record never crosses a segment boundary, so it is read with a single copy from its segment.
+ * The file is deleted on {@link #close()}.
+ *
+ * @author traff
+ */
+public class ScrollbackFile implements Closeable {
+  private static final Logger LOG = Logger.getLogger(ScrollbackFile.class);
+
+  static final int SEGMENT_SIZE = 16 * 1024 * 1024;
+
+  private final int mySegmentSize;
+  private File myFile;
+  private RandomAccessFile myRandomAccessFile;
+  private final List<MappedByteBuffer> mySegments = new ArrayList<>();
+  private long myLength = 0;
+  private boolean myClosed = false;
+
+  public ScrollbackFile() {
+    this(SEGMENT_SIZE);
+  }
+
+  ScrollbackFile(int segmentSize) {
+    mySegmentSize = segmentSize;
+  }
+
+  /**
+   * @return offset of the record in the file, or -1 if it can't be stored
+   */
+  public synchronized long append(@NotNull byte[] data) {
+    if (myClosed || data.length > mySegmentSize) {
+      return -1;
+    }
+    try {
+      if (myFile == null) {
+        myFile = File.createTempFile("jediterm-scrollback", ".bin");
+        myFile.deleteOnExit();
+        myRandomAccessFile = new RandomAccessFile(myFile, "rw");
+      }
+
+      long segmentStart = (long)(mySegments.size() - 1) * mySegmentSize;
+      if (mySegments.isEmpty() || myLength + data.length > segmentStart + mySegmentSize) {
+        segmentStart = (long)mySegments.size() * mySegmentSize;
+        mySegments.add(myRandomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, segmentStart, mySegmentSize));
+        myLength = segmentStart;
+      }
+
+      long offset = myLength;
+      ByteBuffer segment = mySegments.get(mySegments.size() - 1).duplicate();
+      segment.position((int)(offset - segmentStart));
+      segment.put(data);
+      myLength += data.length;
+      return offset;
+    }
+    catch (IOException e) {
+      LOG.error("Can't write scrollback file", e);
+      return -1;
+    }
+  }
+
+  @NotNull
+  public synchronized byte[] read(long offset, int length) {
+    if (myClosed) {
+      throw new IllegalStateException("Scrollback file is closed");
+    }
+    ByteBuffer segment = mySegments.get((int)(offset / mySegmentSize)).duplicate();
+    segment.position((int)(offset % mySegmentSize));
+    byte[] data = new byte[length];
+    segment.get(data);
+    return data;
+  }
+
+  /**
+   * @return bytes written to the file, including the unused tails of segments
+   */
+  public synchronized long getLength() {
+    return myLength;
+  }
+
+  @Override
+  public synchronized void close() {
+    if (myClosed) {
+      return;
+    }
+    myClosed = true;
+    mySegments.clear();
+    if (myFile != null) {
+      try {
+        myRandomAccessFile.close();
+      }
+      catch (IOException e) {
+        LOG.warn("Can't close scrollback file", e);
+      }
+      if (!myFile.delete()) {
+        LOG.debug("Scrollback file will be deleted on exit: " + myFile);
+      }
+    }
+  }
+}
@@ -115,8 +115,8 @@ public class SelectionUtil {
       return new Point(x, y);
     }
 
-    String line = terminalTextBuffer.getLine(y).getText();
-    while (x < line.length() && !separators.contains(line.charAt(x))) {
+    TerminalLine line = terminalTextBuffer.getLine(y);
+    while (x < line.getTextLength() && !separators.contains(line.charAt(x))) {
       x--;
       if (x < 0) {
         if (y <= - terminalTextBuffer.getHistoryLinesCount()) {
@@ -125,7 +125,7 @@ public class SelectionUtil {
         y--;
         x = terminalWidth - 1;
 
-        line = terminalTextBuffer.getLine(y).getText();
+        line = terminalTextBuffer.getLine(y);
       }
     }
 
@@ -152,8 +152,8 @@ public class SelectionUtil {
       return new Point(x, y);
     }
 
-    String line = terminalTextBuffer.getLine(y).getText();
-    while (x < line.length() && !separators.contains(line.charAt(x))) {
+    TerminalLine line = terminalTextBuffer.getLine(y);
+    while (x < line.getTextLength() && !separators.contains(line.charAt(x))) {
       x++;
       if (x >= terminalWidth) {
         if (y >= terminalHeight - 1) {
@@ -162,7 +162,7 @@ public class SelectionUtil {
         y++;
         x = 0;
         
-        line = terminalTextBuffer.getLine(y).getText();
+        line = terminalTextBuffer.getLine(y);
       }
     }
 
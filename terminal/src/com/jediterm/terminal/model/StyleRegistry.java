@@ -0,0 +1,45 @@
+package com.jediterm.terminal.model;
+
+import com.jediterm.terminal.TextStyle;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Interns distinct text styles of a terminal, so that cells with equal styles share one readonly instance. Every
+ * terminal has its own registry (see {@link StyleState}), so sessions don't share a global table. Cells don't
+ * store ids of the registry, they refer to styles by index in the style table of their {@link TerminalLine}.
+ * <p/>
+ * Number of styles is bounded by {@link #MAX_STYLES}. When the table is full it is cleared: instances returned
+ * before stay valid, equal styles registered later just get a new instance.
+ *
+ * @author traff
+ */
+public class StyleRegistry {
+  public static final int MAX_STYLES = 1 << 16;
+
+  private final Map<TextStyle, TextStyle> myStyles = new HashMap<TextStyle, TextStyle>();
+
+  /**
+   * @return readonly instance equal to the given style, which is shared by all its users
+   */
+  @NotNull
+  public synchronized TextStyle getCanonicalStyle(@NotNull TextStyle style) {
+    TextStyle canonical = myStyles.get(style);
+    if (canonical != null) {
+      return canonical;
+    }
+
+    if (myStyles.size() == MAX_STYLES) {
+      myStyles.clear();
+    }
+    canonical = style.readonlyCopy();
+    myStyles.put(canonical, canonical);
+    return canonical;
+  }
+
+  public synchronized int size() {
+    return myStyles.size();
+  }
+}
@@ -10,16 +10,50 @@ public class StyleState {
   
   private TextStyle myMergedStyle = null;
 
+  private final StyleRegistry myRegistry;
+  private TextStyle myCanonicalStyle = null;
+  private TextStyle myEmptyStyleWithColors = null;
+
   public StyleState() {
     this(TextStyle.EMPTY);
   }
 
   public StyleState(TextStyle textStyle) {
+    this(textStyle, new StyleRegistry());
+  }
+
+  private StyleState(TextStyle textStyle, StyleRegistry registry) {
     myCurrentStyle = textStyle;
+    myRegistry = registry;
   }
 
+  /**
+   * @return canonical current style, it is looked up in the registry only after the style is changed
+   */
   public TextStyle getCurrent() {
-    return TextStyle.getCanonicalStyle(getMergedStyle());
+    TextStyle style = myCanonicalStyle;
+    if (style == null) {
+      style = myRegistry.getCanonicalStyle(getMergedStyle());
+      myCanonicalStyle = style;
+    }
+    return style;
+  }
+
+  /**
+   * @return canonical style without options but with colors of the current one, it is used for erased cells
+   */
+  public TextStyle getCurrentEmptyWithColors() {
+    TextStyle style = myEmptyStyleWithColors;
+    if (style == null) {
+      style = myRegistry.getCanonicalStyle(getCurrent().createEmptyWithColors());
+      myEmptyStyleWithColors = style;
+    }
+    return style;
+  }
+
+  @NotNull
+  public StyleRegistry getStyleRegistry() {
+    return myRegistry;
   }
 
   private static TextStyle merge(@NotNull TextStyle style, @NotNull TextStyle defaultStyle) {
@@ -36,7 +70,13 @@ public class StyleState {
 
   public void reset() {
     myCurrentStyle = myDefaultStyle.clone();
+    styleChanged();
+  }
+
+  private void styleChanged() {
     myMergedStyle = null;
+    myCanonicalStyle = null;
+    myEmptyStyleWithColors = null;
   }
 
   public void set(StyleState styleState) {
@@ -45,7 +85,7 @@ public class StyleState {
 
   public void setDefaultStyle(TextStyle defaultStyle) {
     myDefaultStyle = defaultStyle;
-    myMergedStyle = null;
+    styleChanged();
   }
 
   public TerminalColor getBackground() {
@@ -65,12 +105,12 @@ public class StyleState {
   }
 
   public StyleState clone() {
-    return new StyleState(myCurrentStyle);
+    return new StyleState(myCurrentStyle, myRegistry);
   }
 
   public void setCurrent(TextStyle current) {
     myCurrentStyle = current;
-    myMergedStyle = null;
+    styleChanged();
   }
 
   public TextStyle getMergedStyle() {
@@ -0,0 +1,140 @@
+package com.jediterm.terminal.model;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.BitSet;
+
+/**
+ * Changes of a {@link TerminalTextBuffer} since the previous model event. Rows are screen rows starting from 0,
+ * lines that scrolled out of the screen top are reported by {@link #getScrollDelta()} instead of dirty rows.
+ *
+ * @author traff
+ */
+public class TerminalDamage {
+  private final BitSet myDirtyRows;
+  private final int myScrollDelta;
+  private final boolean myFullRepaint;
+  private final boolean myHistoryChanged;
+
+  private TerminalDamage(@NotNull BitSet dirtyRows, int scrollDelta, boolean fullRepaint, boolean historyChanged) {
+    myDirtyRows = dirtyRows;
+    myScrollDelta = scrollDelta;
+    myFullRepaint = fullRepaint;
+    myHistoryChanged = historyChanged;
+  }
+
+  /**
+   * @return true if the whole buffer should be considered changed, e.g. after resize or switching the alternate buffer
+   */
+  public boolean isFullRepaint() {
+    return myFullRepaint;
+  }
+
+  /**
+   * @return true if lines were added to or removed from the history
+   */
+  public boolean isHistoryChanged() {
+    return myHistoryChanged;
+  }
+
+  /**
+   * @return count of lines that scrolled from the top of the screen into the history, the rows that were dirty before
+   * the scroll are already moved up by this count
+   */
+  public int getScrollDelta() {
+    return myScrollDelta;
+  }
+
+  public boolean isRowDirty(int row) {
+    return myFullRepaint || (row >= 0 && myDirtyRows.get(row));
+  }
+
+  /**
+   * @return the first dirty row or -1 if there are no dirty rows
+   */
+  public int getFirstDirtyRow() {
+    return myDirtyRows.nextSetBit(0);
+  }
+
+  /**
+   * @return the last dirty row or -1 if there are no dirty rows
+   */
+  public int getLastDirtyRow() {
+    return myDirtyRows.length() - 1;
+  }
+
+  @NotNull
+  public BitSet getDirtyRows() {
+    return (BitSet)myDirtyRows.clone();
+  }
+
+  public boolean isEmpty() {
+    return !myFullRepaint && !myHistoryChanged && myScrollDelta == 0 && myDirtyRows.isEmpty();
+  }
+
+  @Override
+  public String toString() {
+    return "TerminalDamage{rows=" + myDirtyRows + ", scroll=" + myScrollDelta + ", full=" + myFullRepaint +
+           ", history=" + myHistoryChanged + "}";
+  }
+
+  /**
+   * Accumulates changes of the buffer between model events
+   */
+  static class Builder {
+    private BitSet myDirtyRows = new BitSet();
+    private int myScrollDelta = 0;
+    private boolean myFullRepaint = false;
+    private boolean myHistoryChanged = false;
+
+    /**
+     * @param to exclusive
+     */
+    void rowsChanged(int from, int to) {
+      if (from < to) {
+        myDirtyRows.set(Math.max(from, 0), to);
+      }
+    }
+
+    void rowChanged(int row) {
+      if (row >= 0) {
+        myDirtyRows.set(row);
+      }
+    }
+
+    /**
+     * The whole screen of the given height was scrolled up by count lines, the new bottom lines are dirty
+     */
+    void linesScrolled(int count, int height) {
+      myScrollDelta += count;
+      myDirtyRows = count < height ? myDirtyRows.get(count, height) : new BitSet();
+      rowsChanged(height - count, height);
+      myHistoryChanged = true;
+    }
+
+    void historyChanged() {
+      myHistoryChanged = true;
+    }
+
+    void fullRepaint() {
+      myFullRepaint = true;
+    }
+
+    boolean isEmpty() {
+      return !myFullRepaint && !myHistoryChanged && myScrollDelta == 0 && myDirtyRows.isEmpty();
+    }
+
+    /**
+     * @return accumulated damage, the builder is reset
+     */
+    @NotNull
+    TerminalDamage build() {
+      TerminalDamage damage = new TerminalDamage(myDirtyRows, myScrollDelta, myFullRepaint, myHistoryChanged);
+      myDirtyRows = new BitSet();
+      myScrollDelta = 0;
+      myFullRepaint = false;
+      myHistoryChanged = false;
+      return damage;
+    }
+  }
+}
@@ -1,52 +1,94 @@
 package com.jediterm.terminal.model;
 
-import com.google.common.collect.Lists;
 import com.jediterm.terminal.util.CharUtils;
 import com.jediterm.terminal.StyledTextConsumer;
 import com.jediterm.terminal.TextStyle;
-import com.jediterm.terminal.util.Pair;
+import com.jediterm.terminal.util.Util;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.*;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
 
 /**
+ * Line of cells. Chars are stored in a flat array and every cell refers to its style by an index in the line's
+ * style table, so writing into the line costs O(written chars) and doesn't create objects. Styled runs are built
+ * only when the line is processed. Hyperlink styles are entries of the table like any other style.
+ * <p/>
+ * NUL chars can only be at the end of the line: they mark the part that was never written or was erased to the end.
+ * When text is written after NULs, they become spaces.
+ * <p/>
+ * A line that is cleared before anything is written to it refers to cells shared by all blank lines, they are
+ * copied when the line is written.
+ *
  * @author traff
  */
 public class TerminalLine {
+  private static final char[] NO_CHARS = new char[0];
+  private static final int[] NO_STYLES = new int[0];
+  private static final TextStyle[] NO_STYLE_TABLE = new TextStyle[0];
+
+  private static final int WRAPPED_FLAG = 1;
+  private static final int HYPERLINKS_PROCESSED_FLAG = 2;
+
+  private static volatile int[] ourBlankStyles = NO_STYLES;
+
+  private char[] myChars = NO_CHARS;
+  private int[] myStyles = NO_STYLES; // index in myStyleTable for every cell
+  private int myLength = 0;
+  private int myTextLength = 0; // cells after it are NUL
+
+  private boolean mySharedCells = false; // myChars and myStyles are shared blank cells
+
+  private TextStyle[] myStyleTable = NO_STYLE_TABLE;
+  private int myStyleCount = 0;
+  private int myLastStyleIndex = -1;
 
-  private TextEntries myTextEntries = new TextEntries();
   private boolean myWrapped = false;
 
+  int myAccountedSize = 0; // size of the line when it was added to a LinesBuffer
+  private int myModificationCount = 0;
+
+  private String myText; // cached text, valid while the modification count is the same
+  private int myTextModificationCount;
+
+  private int myHyperlinksModificationCount = -1; // modification count when hyperlinks were found, -1 if never
+  private boolean myReadHyperlinksProcessed = false; // hyperlinks were found when the line was written to a block
+
   public TerminalLine() {
   }
 
   public TerminalLine(@NotNull TextEntry entry) {
-    myTextEntries.add(entry);
+    writeCharacters(0, entry.getStyle(), entry.getText());
   }
 
   public static TerminalLine createEmpty() {
     return new TerminalLine();
   }
 
+  /**
+   * @return text of the line without trailing NULs, the string is cached until the line is modified
+   */
   public synchronized String getText() {
-    final StringBuilder sb = new StringBuilder();
-
-    for (TerminalLine.TextEntry textEntry : Lists.newArrayList(myTextEntries)) {
-      // NUL can only be at the end
-      if (textEntry.getText().isNul()) {
-        break;
-      } else {
-        sb.append(textEntry.getText());
-      }
+    if (myText == null || myTextModificationCount != myModificationCount) {
+      myText = new String(myChars, 0, myTextLength);
+      myTextModificationCount = myModificationCount;
     }
+    return myText;
+  }
 
-    return sb.toString();
+  /**
+   * @return length of {@link #getText()}, the text isn't built
+   */
+  public synchronized int getTextLength() {
+    return myTextLength;
   }
 
-  public char charAt(int x) {
-    String text = getText();
-    return x < text.length() ? text.charAt(x) : CharUtils.EMPTY_CHAR;
+  public synchronized char charAt(int x) {
+    return x >= 0 && x < myTextLength ? myChars[x] : CharUtils.EMPTY_CHAR;
   }
 
   public boolean isWrapped() {
@@ -54,77 +96,220 @@ public class TerminalLine {
   }
 
   public void setWrapped(boolean wrapped) {
-    myWrapped = wrapped;
+    if (myWrapped != wrapped) {
+      myWrapped = wrapped;
+      myModificationCount++;
+    }
+  }
+
+  /**
+   * @return number that changes on every modification of the line
+   */
+  public synchronized int getModificationCount() {
+    return myModificationCount;
+  }
+
+  /**
+   * @return true if hyperlinks were found in the current version of the line
+   */
+  public synchronized boolean isHyperlinksProcessed() {
+    return myHyperlinksModificationCount == myModificationCount;
+  }
+
+  /**
+   * Marks the version of the line in which hyperlinks were found
+   */
+  public synchronized void setHyperlinksProcessed(int modificationCount) {
+    myHyperlinksModificationCount = modificationCount;
+  }
+
+  /**
+   * @return copy of the line that isn't changed when this line is modified
+   */
+  @NotNull
+  public synchronized TerminalLine copy() {
+    TerminalLine line = new TerminalLine();
+    if (mySharedCells) {
+      line.myChars = myChars;
+      line.myStyles = myStyles;
+      line.mySharedCells = true;
+    }
+    else {
+      line.myChars = Arrays.copyOf(myChars, myLength);
+      line.myStyles = Arrays.copyOf(myStyles, myLength);
+    }
+    line.myLength = myLength;
+    line.myTextLength = myTextLength;
+    line.myStyleTable = Arrays.copyOf(myStyleTable, myStyleCount);
+    line.myStyleCount = myStyleCount;
+    line.myWrapped = myWrapped;
+    line.myModificationCount = myModificationCount;
+    line.myHyperlinksModificationCount = myHyperlinksModificationCount;
+    return line;
   }
 
   public synchronized void clear(@NotNull TextEntry filler) {
-    myTextEntries.clear();
-    myTextEntries.add(filler);
+    myModificationCount++;
+    myLength = 0;
+    myTextLength = 0;
+    Arrays.fill(myStyleTable, 0, myStyleCount, null);
+    myStyleCount = 0;
+    myLastStyleIndex = -1;
+    if (filler.isNul() && (mySharedCells || myChars.length == 0)) {
+      shareBlankCells(filler.getLength(), filler.getStyle());
+    }
+    else {
+      writeCharacters(0, filler.getStyle(), filler.getText());
+    }
     setWrapped(false);
   }
 
+  private void shareBlankCells(int length, @NotNull TextStyle style) {
+    int[] styles = ourBlankStyles;
+    if (styles.length < length) {
+      styles = ourBlankStyles = new int[Math.max(length, styles.length * 2)];
+    }
+    myChars = CharBuffer.nuls(length).getBuf();
+    myStyles = styles; // all cells refer to the first style in the table
+    mySharedCells = true;
+    myLength = length;
+    myStyleCount = 0;
+    getStyleIndex(style);
+  }
+
   public void writeString(int x, @NotNull CharBuffer str, @NotNull TextStyle style) {
     writeCharacters(x, style, str);
   }
 
   private synchronized void writeCharacters(int x, @NotNull TextStyle style, @NotNull CharBuffer characters) {
-    int len = myTextEntries.length();
+    myModificationCount++;
+    int length = characters.length();
+    int end = prepareWrite(x, length);
 
-    if (x >= len) {
-      // fill the gap
-      if (x - len > 0) {
-        myTextEntries.add(new TextEntry(TextStyle.EMPTY, new CharBuffer(CharUtils.NUL_CHAR, x - len)));
-      }
-      myTextEntries.add(new TextEntry(style, characters));
-    } else {
-      len = Math.max(len, x + characters.length());
-      myTextEntries = merge(x, characters, style, myTextEntries, len);
-    }
+    System.arraycopy(characters.getBuf(), characters.getStart(), myChars, x, length);
+    Arrays.fill(myStyles, x, end, getStyleIndex(style));
+
+    textWritten(x, end, characters.isNul());
   }
 
-  private static TextEntries merge(int x, @NotNull CharBuffer str, @NotNull TextStyle style, @NotNull TextEntries entries, int lineLength) {
-    Pair<char[], TextStyle[]> pair = toBuf(entries, lineLength);
+  private void fill(int x, int count, char c, @NotNull TextStyle style) {
+    myModificationCount++;
+    int end = prepareWrite(x, count);
 
-    for (int i = 0; i < str.length(); i++) {
-      pair.first[i + x] = str.charAt(i);
-      pair.second[i + x] = style;
-    }
+    Arrays.fill(myChars, x, end, c);
+    Arrays.fill(myStyles, x, end, getStyleIndex(style));
 
-    return collectFromBuffer(pair.first, pair.second);
+    textWritten(x, end, count > 0 && c == CharUtils.NUL_CHAR);
   }
 
-  private static Pair<char[], TextStyle[]> toBuf(TextEntries entries, int lineLength) {
-    Pair<char[], TextStyle[]> pair = Pair.create(new char[lineLength], new TextStyle[lineLength]);
-
+  /**
+   * Makes room for <b>count</b> cells at <b>x</b>, the gap after the line end is filled with NUL chars.
+   *
+   * @return end of the written range
+   */
+  private int prepareWrite(int x, int count) {
+    int end = x + count;
+    ensureCapacity(end);
+    if (x > myLength) {
+      Arrays.fill(myChars, myLength, x, CharUtils.NUL_CHAR);
+      Arrays.fill(myStyles, myLength, x, getStyleIndex(TextStyle.EMPTY));
+    }
+    myLength = Math.max(myLength, end);
+    return end;
+  }
 
-    int p = 0;
-    for (TextEntry entry : entries) {
-      for (int i = 0; i < entry.getLength(); i++) {
-        pair.first[p + i] = entry.getText().charAt(i);
-        pair.second[p + i] = entry.getStyle();
+  private void textWritten(int x, int end, boolean nul) {
+    if (nul) {
+      if (end >= myTextLength) {
+        myTextLength = Math.min(myTextLength, x);
+      }
+      else {
+        // NUL can only be at the end of the line
+        Arrays.fill(myChars, x, end, CharUtils.EMPTY_CHAR);
       }
-      p += entry.getLength();
     }
-    return pair;
+    else if (x > myTextLength) {
+      Arrays.fill(myChars, myTextLength, x, CharUtils.EMPTY_CHAR);
+      myTextLength = end;
+    }
+    else {
+      myTextLength = Math.max(myTextLength, end);
+    }
   }
 
-  private static TextEntries collectFromBuffer(@NotNull char[] buf, @NotNull TextStyle[] styles) {
-    TextEntries result = new TextEntries();
+  private void ensureCapacity(int capacity) {
+    if (mySharedCells) {
+      int newCapacity = Math.max(capacity, myLength);
+      myChars = Util.copyOf(myChars, newCapacity);
+      myStyles = Util.copyOf(myStyles, newCapacity);
+      mySharedCells = false;
+    }
+    else if (capacity > myChars.length) {
+      int newCapacity = Math.max(capacity, myChars.length + (myChars.length >> 1));
+      myChars = Util.copyOf(myChars, newCapacity);
+      myStyles = Util.copyOf(myStyles, newCapacity);
+    }
+  }
 
-    TextStyle curStyle = styles[0];
-    int start = 0;
+  private int getStyleIndex(@NotNull TextStyle style) {
+    if (myLastStyleIndex >= 0 && myStyleTable[myLastStyleIndex] == style) {
+      return myLastStyleIndex;
+    }
+    for (int i = myStyleCount - 1; i >= 0; i--) {
+      if (myStyleTable[i] == style) {
+        myLastStyleIndex = i;
+        return i;
+      }
+    }
 
-    for (int i = 1; i < buf.length; i++) {
-      if (styles[i] != curStyle) {
-        result.add(new TextEntry(curStyle, new CharBuffer(buf, start, i - start)));
-        curStyle = styles[i];
-        start = i;
+    if (myStyleTable.length == 0) {
+      myStyleTable = new TextStyle[4];
+    }
+    else if (myStyleCount == myStyleTable.length) {
+      compactStyleTable();
+      if (myStyleCount > myStyleTable.length / 2) {
+        myStyleTable = Util.copyOf(myStyleTable, myStyleTable.length * 2);
       }
     }
+    myStyleTable[myStyleCount] = style;
+    myLastStyleIndex = myStyleCount;
+    return myStyleCount++;
+  }
 
-    result.add(new TextEntry(curStyle, new CharBuffer(buf, start, buf.length - start)));
+  /**
+   * Drops styles that are no longer used by any cell
+   */
+  private void compactStyleTable() {
+    int[] newIndexes = new int[myStyleCount];
+    Arrays.fill(newIndexes, -1);
+    int count = 0;
+    for (int i = 0; i < myLength; i++) {
+      int index = myStyles[i];
+      if (newIndexes[index] < 0) {
+        myStyleTable[count] = myStyleTable[index];
+        newIndexes[index] = count++;
+      }
+      myStyles[i] = newIndexes[index];
+    }
+    Arrays.fill(myStyleTable, count, myStyleCount, null);
+    myStyleCount = count;
+    myLastStyleIndex = -1;
+  }
 
-    return result;
+  /**
+   * Restores the invariant after cells are moved: NULs before the last non-NUL char become spaces.
+   */
+  private void normalizeNuls() {
+    int textLength = myLength;
+    while (textLength > 0 && myChars[textLength - 1] == CharUtils.NUL_CHAR) {
+      textLength--;
+    }
+    for (int i = 0; i < textLength; i++) {
+      if (myChars[i] == CharUtils.NUL_CHAR) {
+        myChars[i] = CharUtils.EMPTY_CHAR;
+      }
+    }
+    myTextLength = textLength;
   }
 
   public synchronized void deleteCharacters(int x) {
@@ -132,141 +317,164 @@ public class TerminalLine {
   }
 
   public synchronized void deleteCharacters(int x, @NotNull TextStyle style) {
-    deleteCharacters(x, myTextEntries.length() - x, style);
+    deleteCharacters(x, myLength - x, style);
     // delete to the end of line : line is no more wrapped
     setWrapped(false);
   }
 
   public synchronized void deleteCharacters(int x, int count, @NotNull TextStyle style) {
-    int p = 0;
-    TextEntries newEntries = new TextEntries();
-
-    int remaining = count;
-
-    for (TextEntry entry : myTextEntries) {
-      if (remaining == 0) {
-        newEntries.add(entry);
-        continue;
-      }
-      int len = entry.getLength();
-      if (p + len <= x) {
-        p += len;
-        newEntries.add(entry);
-        continue;
-      }
-      int dx = x - p; //>=0
-      if (dx > 0) {
-        //part of entry before x
-        newEntries.add(new TextEntry(entry.getStyle(), entry.getText().subBuffer(0, dx)));
-        p = x;
-      }
-      if (dx + remaining < len) {
-        //part that left after deleting count 
-        newEntries.add(new TextEntry(entry.getStyle(), entry.getText().subBuffer(dx + remaining, len - (dx + remaining))));
-        remaining = 0;
-      } else {
-        remaining -= (len - dx);
-        p = x;
-      }
+    myModificationCount++;
+    if (x < myLength && count > 0) {
+      ensureCapacity(myLength);
+      int removed = Math.min(count, myLength - x);
+      System.arraycopy(myChars, x + removed, myChars, x, myLength - x - removed);
+      System.arraycopy(myStyles, x + removed, myStyles, x, myLength - x - removed);
+      myLength -= removed;
+      normalizeNuls();
     }
     if (count > 0 && style != TextStyle.EMPTY) { // apply style to the end of the line
-      newEntries.add(new TextEntry(style, new CharBuffer(CharUtils.NUL_CHAR, count)));
+      fill(myLength, count, CharUtils.NUL_CHAR, style);
     }
-
-    myTextEntries = newEntries;
   }
 
   public synchronized void insertBlankCharacters(int x, int count, int maxLen, @NotNull TextStyle style) {
-    int len = myTextEntries.length();
-    len = Math.min(len + count, maxLen);
-
-    char[] buf = new char[len];
-    TextStyle[] styles = new TextStyle[len];
-
-    int p = 0;
-    for (TextEntry entry : myTextEntries) {
-      for (int i = 0; i < entry.getLength() && p < len; i++) {
-        if (p == x) {
-          for (int j = 0; j < count && p < len; j++) {
-            buf[p] = CharUtils.EMPTY_CHAR;
-            styles[p] = style;
-            p++;
-          }
-        }
-        if (p < len) {
-          buf[p] = entry.getText().charAt(i);
-          styles[p] = entry.getStyle();
-          p++;
-        }
-      }
-      if (p >= len) {
-        break;
-      }
+    myModificationCount++;
+    int len = Math.min(myLength + count, maxLen);
+    if (x >= len || count <= 0) {
+      return;
     }
 
-    // if not inserted yet (ie. x > len)
-    for (; p < x && p < len; p++) {
-      buf[p] = CharUtils.EMPTY_CHAR;
-      styles[p] = TextStyle.EMPTY;
-      p++;
+    ensureCapacity(len);
+    if (x > myLength) {
+      Arrays.fill(myChars, myLength, x, CharUtils.EMPTY_CHAR);
+      Arrays.fill(myStyles, myLength, x, getStyleIndex(TextStyle.EMPTY));
     }
-    for (; p < x + count && p < len; p++) {
-      buf[p] = CharUtils.EMPTY_CHAR;
-      styles[p] = style;
-      p++;
+    else {
+      int moved = Math.max(0, Math.min(myLength - x, len - x - count));
+      System.arraycopy(myChars, x, myChars, x + count, moved);
+      System.arraycopy(myStyles, x, myStyles, x + count, moved);
     }
-
-    myTextEntries = collectFromBuffer(buf, styles);
+    int end = Math.min(x + count, len);
+    Arrays.fill(myChars, x, end, CharUtils.EMPTY_CHAR);
+    Arrays.fill(myStyles, x, end, getStyleIndex(style));
+    myLength = len;
+    normalizeNuls();
   }
 
   public synchronized void clearArea(int leftX, int rightX, @NotNull TextStyle style) {
     if (rightX == -1) {
-      rightX = myTextEntries.length();
+      rightX = myLength;
     }
-    writeCharacters(leftX, style, new CharBuffer(
-            rightX >= myTextEntries.length() ? CharUtils.NUL_CHAR : CharUtils.EMPTY_CHAR,
-            rightX - leftX));
+    fill(leftX, rightX - leftX, rightX >= myLength ? CharUtils.NUL_CHAR : CharUtils.EMPTY_CHAR, style);
   }
 
   @Nullable
   public synchronized TextStyle getStyleAt(int x) {
-    int i = 0;
+    return x >= 0 && x < myLength ? myStyleTable[myStyles[x]] : null;
+  }
 
-    for (TextEntry te : myTextEntries) {
-      if (x >= i && x < i + te.getLength()) {
-        return te.getStyle();
-      }
-      i += te.getLength();
+  /**
+   * Passes runs of cells with the same style to the consumer, chars are not copied
+   */
+  public synchronized void process(int y, StyledTextConsumer consumer, int startRow) {
+    int start = 0;
+    while (start < myTextLength) {
+      int end = runEnd(start, myTextLength);
+      consumer.consume(start, y, myStyleTable[myStyles[start]], new CharBuffer(myChars, start, end - start), startRow);
+      start = end;
     }
+    while (start < myLength) {
+      int end = runEnd(start, myLength);
+      consumer.consumeNul(start, y, myTextLength, myStyleTable[myStyles[start]],
+                          new CharBuffer(myChars, start, end - start), startRow);
+      start = end;
+    }
+    consumer.consumeQueue(myLength, y, myTextLength, startRow);
+  }
 
-    return null;
+  private int runEnd(int start, int limit) {
+    int style = myStyles[start];
+    int end = start + 1;
+    while (end < limit && myStyles[end] == style) {
+      end++;
+    }
+    return end;
   }
 
-  public synchronized void process(int y, StyledTextConsumer consumer, int startRow) {
-    int x = 0;
-    int nulIndex = -1;
-    for (TextEntry te : Lists.newArrayList(myTextEntries)) {
-      if (te.getText().isNul()) {
-        if (nulIndex < 0) {
-          nulIndex = x;
-        }
-        consumer.consumeNul(x, y, nulIndex, te.getStyle(), te.getText(), startRow);
-      } else {
-        consumer.consume(x, y, te.getStyle(), te.getText(), startRow);
+  /**
+   * Writes cells of the line, styles are written as ids from <b>styleIds</b>, new styles are added to it
+   */
+  synchronized void writeTo(@NotNull DataOutput out, @NotNull Map<TextStyle, Integer> styleIds) throws IOException {
+    out.writeByte((myWrapped ? WRAPPED_FLAG : 0) | (isHyperlinksProcessed() ? HYPERLINKS_PROCESSED_FLAG : 0));
+    CompressedLinesBlock.writeVarInt(out, myLength);
+    CompressedLinesBlock.writeVarInt(out, myTextLength);
+    int start = 0;
+    while (start < myLength) {
+      int end = runEnd(start, myLength);
+      TextStyle style = myStyleTable[myStyles[start]];
+      Integer id = styleIds.get(style);
+      if (id == null) {
+        id = styleIds.size();
+        styleIds.put(style, id);
       }
-      x += te.getLength();
+      CompressedLinesBlock.writeVarInt(out, end - start);
+      CompressedLinesBlock.writeVarInt(out, id);
+      start = end;
+    }
+    for (int i = 0; i < myTextLength; i++) {
+      out.writeChar(myChars[i]);
     }
-    consumer.consumeQueue(x, y, nulIndex < 0 ? x : nulIndex, startRow);
   }
 
-  public synchronized boolean isNul() {
-    for (TextEntry e : myTextEntries.entries()) {
-      if (!e.isNul()) {
-        return false;
-      }
+  @NotNull
+  static TerminalLine readFrom(@NotNull DataInput in, @NotNull TextStyle[] styles) throws IOException {
+    TerminalLine line = new TerminalLine();
+    int flags = in.readByte();
+    line.myWrapped = (flags & WRAPPED_FLAG) != 0;
+    if ((flags & HYPERLINKS_PROCESSED_FLAG) != 0) {
+      line.myHyperlinksModificationCount = line.myModificationCount;
+      line.myReadHyperlinksProcessed = true;
     }
+    int length = CompressedLinesBlock.readVarInt(in);
+    int textLength = CompressedLinesBlock.readVarInt(in);
+    line.ensureCapacity(length);
+    int x = 0;
+    while (x < length) {
+      int runLength = CompressedLinesBlock.readVarInt(in);
+      TextStyle style = styles[CompressedLinesBlock.readVarInt(in)];
+      line.myLength = x; // cells before x are valid, if the style table is compacted
+      Arrays.fill(line.myStyles, x, x + runLength, line.getStyleIndex(style));
+      x += runLength;
+    }
+    for (int i = 0; i < textLength; i++) {
+      line.myChars[i] = in.readChar();
+    }
+    Arrays.fill(line.myChars, textLength, length, CharUtils.NUL_CHAR);
+    line.myLength = length;
+    line.myTextLength = textLength;
+    return line;
+  }
+
+  /**
+   * @return true if the line was modified or its hyperlinks were found since it was read by {@link #readFrom}
+   */
+  synchronized boolean isChangedSinceRead() {
+    return myModificationCount != 0 || isHyperlinksProcessed() != myReadHyperlinksProcessed;
+  }
 
-    return true;
+  /**
+   * @return approximate count of bytes retained by the line, styles are shared and aren't counted
+   */
+  synchronized int estimateSize() {
+    int size = 48 + 16 + myStyleTable.length * 4;
+    if (!mySharedCells) {
+      size += 16 + myChars.length * 2 + 16 + myStyles.length * 4;
+    }
+    return size;
+  }
+
+  public synchronized boolean isNul() {
+    return myTextLength == 0;
   }
 
   public void runWithLock(Runnable r) {
@@ -279,9 +487,12 @@ public class TerminalLine {
     private final TextStyle myStyle;
     private final CharBuffer myText;
 
+    /**
+     * The line copies chars of the entry, so the buffer isn't copied here
+     */
     public TextEntry(@NotNull TextStyle style, @NotNull CharBuffer text) {
       myStyle = style;
-      myText = text.clone();
+      myText = text;
     }
 
     public TextStyle getStyle() {
@@ -300,40 +511,4 @@ public class TerminalLine {
       return myText.isNul();
     }
   }
-
-  private static class TextEntries implements Iterable<TextEntry> {
-    private ArrayList<TextEntry> myTextEntries = new ArrayList<TextEntry>();
-
-    private int myLength = 0;
-
-    public void add(TextEntry entry) {
-      // NUL can only be at the end of the line
-      if (!entry.getText().isNul()) {
-        for (TextEntry t : myTextEntries) {
-          if (t.getText().isNul()) {
-            t.getText().unNullify();
-          }
-        }
-      }
-      myTextEntries.add(entry);
-      myLength += entry.getLength();
-    }
-
-    private Collection<TextEntry> entries() {
-      return Collections.unmodifiableCollection(myTextEntries);
-    }
-
-    public Iterator<TextEntry> iterator() {
-      return entries().iterator();
-    }
-
-    public int length() {
-      return myLength;
-    }
-
-    public void clear() {
-      myTextEntries.clear();
-      myLength = 0;
-    }
-  }
 }
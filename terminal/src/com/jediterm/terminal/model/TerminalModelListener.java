@@ -1,8 +1,17 @@
 package com.jediterm.terminal.model;
 
+import org.jetbrains.annotations.NotNull;
+
 /**
  * @author traff
  */
 public interface TerminalModelListener {
   void modelChanged();
+
+  /**
+   * Called instead of {@link #modelChanged()}, override it to process only the changed rows
+   */
+  default void modelChanged(@NotNull TerminalDamage damage) {
+    modelChanged();
+  }
 }
@@ -8,7 +8,6 @@ import com.jediterm.terminal.StyledTextConsumerAdapter;
 import com.jediterm.terminal.TextStyle;
 import com.jediterm.terminal.model.TerminalLine.TextEntry;
 import com.jediterm.terminal.model.hyperlinks.TextProcessing;
-import com.jediterm.terminal.util.CharUtils;
 import com.jediterm.terminal.util.Pair;
 import org.apache.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
@@ -41,10 +40,13 @@ public class TerminalTextBuffer {
   private int myHeight;
 
   private final int myHistoryLinesCount;
+  private long myHistoryMaxBytes = -1;
+  private HistoryMemoryBudget myHistoryMemoryBudget;
 
   private final Lock myLock = new ReentrantLock();
 
   private LinesBuffer myHistoryBufferBackup;
+  private long myReplacedHistoryLinesCount = 0; // lines of history buffers replaced by switching the alternate buffer
   private LinesBuffer myScreenBufferBackup; // to store textBuffer after switching to alternate buffer
 
   private boolean myAlternateBuffer = false;
@@ -52,9 +54,13 @@ public class TerminalTextBuffer {
   private boolean myUsingAlternateBuffer = false;
 
   private java.util.List<TerminalModelListener> myListeners = Lists.newArrayList();
+  private final TerminalDamage.Builder myDamage = new TerminalDamage.Builder();
+  private int myBatchDepth = 0;
+  private Thread myBatchThread;
 
   @Nullable
   private final TextProcessing myTextProcessing;
+  private final Runnable myHyperlinksListener = this::hyperlinksChanged;
 
   public TerminalTextBuffer(final int width, final int height, @NotNull StyleState styleState) {
     this(width, height, styleState, null);
@@ -73,6 +79,22 @@ public class TerminalTextBuffer {
 
     myScreenBuffer = createScreenBuffer();
     myHistoryBuffer = createHistoryBuffer();
+
+    if (textProcessing != null) {
+      textProcessing.addHyperlinksListener(myHyperlinksListener);
+    }
+  }
+
+  private void hyperlinksChanged() {
+    myLock.lock();
+    try {
+      // rows of the processed lines aren't known, they can be in the history as well
+      myDamage.fullRepaint();
+      fireModelChangeEvent();
+    }
+    finally {
+      myLock.unlock();
+    }
   }
 
   @NotNull
@@ -82,7 +104,65 @@ public class TerminalTextBuffer {
 
   @NotNull
   private LinesBuffer createHistoryBuffer() {
-    return new LinesBuffer(myHistoryLinesCount, myTextProcessing);
+    LinesBuffer buffer = new LinesBuffer(myHistoryLinesCount, true, myTextProcessing);
+    buffer.setMaxBytes(myHistoryMaxBytes);
+    buffer.setMemoryBudget(myHistoryMemoryBudget);
+    return buffer;
+  }
+
+  /**
+   * @param maxBytes limit of bytes retained by history lines, negative number means no limit
+   */
+  public void setHistoryMaxBytes(long maxBytes) {
+    myHistoryMaxBytes = maxBytes;
+    myHistoryBuffer.setMaxBytes(maxBytes);
+    if (myHistoryBufferBackup != null) {
+      myHistoryBufferBackup.setMaxBytes(maxBytes);
+    }
+  }
+
+  /**
+   * Shares the limit of history memory with other terminals using the same budget
+   */
+  public void setHistoryMemoryBudget(@Nullable HistoryMemoryBudget budget) {
+    if (myHistoryMemoryBudget != null) {
+      myHistoryMemoryBudget.unregister(this);
+    }
+    myHistoryMemoryBudget = budget;
+    if (budget != null) {
+      budget.register(this);
+    }
+    myHistoryBuffer.setMemoryBudget(budget);
+    if (myHistoryBufferBackup != null) {
+      myHistoryBufferBackup.setMemoryBudget(budget);
+    }
+    checkHistoryMemoryBudget();
+  }
+
+  /**
+   * @return approximate count of bytes retained by history lines, including the history hidden by alternate buffer
+   */
+  public long getHistoryRetainedBytes() {
+    LinesBuffer backup = myHistoryBufferBackup;
+    return myHistoryBuffer.getRetainedBytes() + (backup != null ? backup.getRetainedBytes() : 0);
+  }
+
+  long removeOldestHistoryLines(long bytes) {
+    long released = myHistoryBuffer.removeOldestLines(bytes);
+    if (released < bytes && myHistoryBufferBackup != null) {
+      released += myHistoryBufferBackup.removeOldestLines(bytes - released);
+    }
+    if (released > 0) {
+      myDamage.historyChanged();
+      fireModelChangeEvent();
+    }
+    return released;
+  }
+
+  private void checkHistoryMemoryBudget() {
+    if (myHistoryMemoryBudget != null && myHistoryMemoryBudget.isExceeded()) {
+      myHistoryMemoryBudget.reclaim();
+    }
   }
 
   public Dimension resize(@NotNull final Dimension pendingResize,
@@ -105,6 +185,7 @@ public class TerminalTextBuffer {
         //but empty bottom lines can be collapsed
         int emptyLinesDeleted = myScreenBuffer.removeBottomEmptyLines(oldHeight - 1, count);
         myScreenBuffer.moveTopLinesTo(count - emptyLinesDeleted, myHistoryBuffer);
+        checkHistoryMemoryBudget();
         newCursorY = cursorY - (count - emptyLinesDeleted);
       } else {
         newCursorY = cursorY;
@@ -135,6 +216,7 @@ public class TerminalTextBuffer {
     resizeHandler.sizeUpdated(myWidth, myHeight, newCursorY);
 
 
+    myDamage.fullRepaint();
     fireModelChangeEvent();
 
     return pendingResize;
@@ -148,18 +230,53 @@ public class TerminalTextBuffer {
     myListeners.remove(listener);
   }
 
+  /**
+   * Starts a batch of changes made by the current thread, listeners are notified once at the end of the outermost
+   * batch. Changes made by other threads meanwhile are reported immediately together with the accumulated damage.
+   */
+  public void beginBatch() {
+    myLock.lock();
+    try {
+      if (myBatchDepth++ == 0) {
+        myBatchThread = Thread.currentThread();
+      }
+    }
+    finally {
+      myLock.unlock();
+    }
+  }
+
+  public void endBatch() {
+    myLock.lock();
+    try {
+      if (myBatchDepth > 0 && --myBatchDepth == 0) {
+        myBatchThread = null;
+        if (!myDamage.isEmpty()) {
+          fireModelChangeEvent();
+        }
+      }
+    }
+    finally {
+      myLock.unlock();
+    }
+  }
+
   private void fireModelChangeEvent() {
+    if (myBatchDepth > 0 && myBatchThread == Thread.currentThread()) {
+      return;
+    }
+    TerminalDamage damage = myDamage.build();
     for (TerminalModelListener modelListener : myListeners) {
-      modelListener.modelChanged();
+      modelListener.modelChanged(damage);
     }
   }
 
   private TextStyle createEmptyStyleWithCurrentColor() {
-    return myStyleState.getCurrent().createEmptyWithColors();
+    return myStyleState.getCurrentEmptyWithColors();
   }
 
   private TextEntry createFillerEntry() {
-    return new TextEntry(createEmptyStyleWithCurrentColor(), new CharBuffer(CharUtils.NUL_CHAR, myWidth));
+    return new TextEntry(createEmptyStyleWithCurrentColor(), CharBuffer.nuls(myWidth));
   }
 
   public void deleteCharacters(final int x, final int y, final int count) {
@@ -170,6 +287,7 @@ public class TerminalTextBuffer {
       LOG.error("Attempt to delete negative chars number: count:" + count);
     } else if (count > 0) {
       myScreenBuffer.deleteCharacters(x, y, count, createEmptyStyleWithCurrentColor());
+      myDamage.rowChanged(y);
 
       fireModelChangeEvent();
     }
@@ -183,6 +301,7 @@ public class TerminalTextBuffer {
       LOG.error("Attempt to insert negative blank chars number: count:" + count);
     } else if (count > 0) { //nothing to do
       myScreenBuffer.insertBlankCharacters(x, y, count, myWidth, createEmptyStyleWithCurrentColor());
+      myDamage.rowChanged(y);
 
       fireModelChangeEvent();
     }
@@ -194,12 +313,14 @@ public class TerminalTextBuffer {
 
   public void addLine(@NotNull final TerminalLine line) {
     myScreenBuffer.addLines(Lists.newArrayList(line));
+    myDamage.rowChanged(myScreenBuffer.getLineCount() - 1);
 
     fireModelChangeEvent();
   }
 
   private void writeString(int x, int y, @NotNull CharBuffer str, @NotNull TextStyle style) {
     myScreenBuffer.writeString(x, y - 1, str, style);
+    myDamage.rowChanged(y - 1);
 
     fireModelChangeEvent();
   }
@@ -211,9 +332,20 @@ public class TerminalTextBuffer {
     if (dy > 0) {
       insertLines(scrollRegionTop - 1, dy, scrollRegionBottom);
     } else {
-      LinesBuffer removed = deleteLines(scrollRegionTop - 1, -dy, scrollRegionBottom);
+      // lines scrolled out of the screen top go to the history
+      myScreenBuffer.deleteLines(scrollRegionTop - 1, -dy, scrollRegionBottom - 1, createFillerEntry(),
+                                 scrollRegionTop == 1 ? myHistoryBuffer : null);
+      if (scrollRegionTop == 1 && scrollRegionBottom >= myHeight) {
+        myDamage.linesScrolled(-dy, myHeight);
+      }
+      else {
+        myDamage.rowsChanged(scrollRegionTop - 1, scrollRegionBottom);
+        if (scrollRegionTop == 1) {
+          myDamage.historyChanged();
+        }
+      }
       if (scrollRegionTop == 1) {
-        removed.moveTopLinesTo(removed.getLineCount(), myHistoryBuffer);
+        checkHistoryMemoryBudget();
       }
 
       fireModelChangeEvent();
@@ -323,6 +455,14 @@ public class TerminalTextBuffer {
     return myScreenBuffer.getLineCount();
   }
 
+  /**
+   * @return number of the first history line. The number of a line is this number plus the row of the line counted
+   * from the first history line, it doesn't change when lines are removed from the top of history.
+   */
+  public long getFirstHistoryLineNumber() {
+    return myReplacedHistoryLinesCount + myHistoryBuffer.getRemovedTopLinesCount();
+  }
+
   public char getBuffersCharAt(int x, int y) {
     return getLine(y).charAt(x);
   }
@@ -332,17 +472,12 @@ public class TerminalTextBuffer {
   }
 
   public Pair<Character, TextStyle> getStyledCharAt(int x, int y) {
-    synchronized (myScreenBuffer) {
-      TerminalLine line = getLine(y);
-      return new Pair<Character, TextStyle>(line.charAt(x), line.getStyleAt(x));
-    }
+    TerminalLine line = getLine(y);
+    return new Pair<Character, TextStyle>(line.charAt(x), line.getStyleAt(x));
   }
 
   public char getCharAt(int x, int y) {
-    synchronized (myScreenBuffer) {
-      TerminalLine line = getLine(y);
-      return line.charAt(x);
-    }
+    return getLine(y).charAt(x);
   }
 
   public boolean isUsingAlternateBuffer() {
@@ -351,23 +486,28 @@ public class TerminalTextBuffer {
 
   public void useAlternateBuffer(boolean enabled) {
     myAlternateBuffer = enabled;
+    long firstLineNumber = getFirstHistoryLineNumber() + myHistoryBuffer.getLineCount();
     if (enabled) {
       if (!myUsingAlternateBuffer) {
         myScreenBufferBackup = myScreenBuffer;
         myHistoryBufferBackup = myHistoryBuffer;
         myScreenBuffer = createScreenBuffer();
         myHistoryBuffer = createHistoryBuffer();
+        myReplacedHistoryLinesCount = firstLineNumber;
         myUsingAlternateBuffer = true;
       }
     } else {
       if (myUsingAlternateBuffer) {
+        myHistoryBuffer.dispose();
         myScreenBuffer = myScreenBufferBackup;
         myHistoryBuffer = myHistoryBufferBackup;
         myScreenBufferBackup = createScreenBuffer();
         myHistoryBufferBackup = createHistoryBuffer();
+        myReplacedHistoryLinesCount = firstLineNumber - myHistoryBuffer.getRemovedTopLinesCount();
         myUsingAlternateBuffer = false;
       }
     }
+    myDamage.fullRepaint();
     fireModelChangeEvent();
   }
 
@@ -377,6 +517,7 @@ public class TerminalTextBuffer {
 
   public void insertLines(int y, int count, int scrollRegionBottom) {
     myScreenBuffer.insertLines(y, count, scrollRegionBottom - 1, createFillerEntry());
+    myDamage.rowsChanged(y, scrollRegionBottom);
 
     fireModelChangeEvent();
   }
@@ -384,12 +525,14 @@ public class TerminalTextBuffer {
   // returns deleted lines
   public LinesBuffer deleteLines(int y, int count, int scrollRegionBottom) {
     LinesBuffer linesBuffer = myScreenBuffer.deleteLines(y, count, scrollRegionBottom - 1, createFillerEntry());
+    myDamage.rowsChanged(y, scrollRegionBottom);
     fireModelChangeEvent();
     return linesBuffer;
   }
 
   public void clearLines(int startRow, int endRow) {
     myScreenBuffer.clearLines(startRow, endRow, createFillerEntry());
+    myDamage.rowsChanged(startRow, endRow + 1);
     fireModelChangeEvent();
   }
 
@@ -397,6 +540,7 @@ public class TerminalTextBuffer {
     TextStyle style = createEmptyStyleWithCurrentColor();
     if (y >= 0) {
       myScreenBuffer.clearArea(leftX, y, rightX, y + 1, style);
+      myDamage.rowChanged(y);
       fireModelChangeEvent();
     } else {
       LOG.error("Attempt to erase characters in line: " + y);
@@ -405,6 +549,7 @@ public class TerminalTextBuffer {
 
   public void clearAll() {
     myScreenBuffer.clearAll();
+    myDamage.rowsChanged(0, myHeight);
     fireModelChangeEvent();
   }
 
@@ -432,8 +577,81 @@ public class TerminalTextBuffer {
     }
   }
 
+  /**
+   * Copies the lines of a scrolling window, so that they can be painted without the lock. Unmodified lines reuse
+   * their copies from the previous snapshot.
+   *
+   * @param scrollOrigin row where a scrolling window starts, should be in the range [-history_lines_count, 0]
+   */
+  @NotNull
+  public TextBufferSnapshot createSnapshot(int scrollOrigin, int linesCount, @Nullable TextBufferSnapshot previous) {
+    myLock.lock();
+    try {
+      TextBufferSnapshot.Builder builder = new TextBufferSnapshot.Builder(scrollOrigin, Math.max(linesCount, 0), previous);
+
+      int linesFromHistory = Math.max(0, Math.min(-scrollOrigin, linesCount));
+      int y = Math.max(0, myHistoryBuffer.getLineCount() + scrollOrigin);
+      for (int i = y; i < Math.min(y + linesFromHistory, myHistoryBuffer.getLineCount()); i++) {
+        builder.addLine(myHistoryBuffer.getLine(i), i, y);
+      }
+      for (int i = 0; i < Math.min(linesCount - linesFromHistory, myScreenBuffer.getLineCount()); i++) {
+        builder.addLine(myScreenBuffer.getLine(i), i, -linesFromHistory);
+      }
+      return builder.build();
+    }
+    finally {
+      myLock.unlock();
+    }
+  }
+
+  /**
+   * Requests hyperlinks for the lines of a scrolling window when they are processed lazily, see
+   * {@link TextProcessing#requestHyperlinks(TerminalLine)}
+   *
+   * @param scrollOrigin row where the window starts, can be out of the range of lines
+   */
+  public void requestHyperlinks(int scrollOrigin, int linesCount) {
+    if (myTextProcessing == null || !myTextProcessing.isLazy()) {
+      return;
+    }
+    myLock.lock();
+    try {
+      int from = Math.max(scrollOrigin, -getHistoryLinesCount());
+      int to = Math.min(scrollOrigin + linesCount, myScreenBuffer.getLineCount());
+      for (int row = from; row < to; row++) {
+        myTextProcessing.requestHyperlinks(getLine(row));
+      }
+    }
+    finally {
+      myLock.unlock();
+    }
+  }
+
   public void clearHistory() {
     myHistoryBuffer.clearAll();
+    myDamage.historyChanged();
     fireModelChangeEvent();
   }
+
+  /**
+   * Releases history of the session, including its scrollback file
+   */
+  public void dispose() {
+    myLock.lock();
+    try {
+      if (myHistoryMemoryBudget != null) {
+        myHistoryMemoryBudget.unregister(this);
+      }
+      if (myTextProcessing != null) {
+        myTextProcessing.removeHyperlinksListener(myHyperlinksListener);
+      }
+      myHistoryBuffer.dispose();
+      if (myHistoryBufferBackup != null) {
+        myHistoryBufferBackup.dispose();
+      }
+    }
+    finally {
+      myLock.unlock();
+    }
+  }
 }
@@ -0,0 +1,398 @@
+package com.jediterm.terminal.model;
+
+import com.jediterm.terminal.SubstringFinder.FindResult;
+import org.apache.log4j.Logger;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.awt.*;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Searches the history and the screen on a background thread. A new search cancels the previous one. The buffer is
+ * read by chunks of rows, so the emulator isn't blocked for long, and results are published progressively starting
+ * with the visible rows. Wrapped rows are searched as one line. Rows are tracked by line numbers that don't change
+ * when output written between chunks removes lines from the top of history.
+ * <p/>
+ * If a pattern extends the pattern of the previous complete search and the buffer didn't change since then, only the
+ * previous matches are checked.
+ *
+ * @author traff
+ */
+public class TextBufferSearch {
+  private static final Logger LOG = Logger.getLogger(TextBufferSearch.class);
+
+  static final int CHUNK_ROWS = 1000;
+  static final long PUBLISH_INTERVAL_MS = 100;
+
+  private static final Comparator<Match> MATCH_ORDER =
+    Comparator.<Match>comparingLong(m -> m.myLine).thenComparingInt(m -> m.myOffset);
+
+  public interface ResultListener {
+    /**
+     * Called on the search thread with all matches found so far, while the search isn't cancelled
+     */
+    void resultUpdated(@NotNull FindResult result, boolean complete);
+  }
+
+  private final TerminalTextBuffer myTextBuffer;
+  // every terminal has its own thread, so that a long search in one terminal doesn't delay searches in others
+  private final ExecutorService myExecutor = Executors.newSingleThreadExecutor(r -> {
+    Thread thread = new Thread(r, "JediTerm search");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private final AtomicInteger myGeneration = new AtomicInteger();
+  private final AtomicInteger myChangeCount = new AtomicInteger();
+  private final TerminalModelListener myModelListener = myChangeCount::incrementAndGet;
+
+  // the last complete search, accessed on the search thread only
+  private String myLastPattern;
+  private boolean myLastIgnoreCase;
+  private int myLastChangeCount;
+  private List<Match> myLastMatches;
+
+  public TextBufferSearch(@NotNull TerminalTextBuffer textBuffer) {
+    myTextBuffer = textBuffer;
+    textBuffer.addModelListener(myModelListener);
+  }
+
+  /**
+   * Starts a search, the previous search is cancelled
+   *
+   * @param visibleStartRow the first visible row, negative for history rows
+   */
+  public void search(@NotNull String pattern, boolean ignoreCase, int visibleStartRow, int visibleRowCount,
+                     @NotNull ResultListener listener) {
+    int generation = myGeneration.incrementAndGet();
+    if (pattern.isEmpty() || myExecutor.isShutdown()) {
+      return;
+    }
+    myExecutor.execute(() -> {
+      try {
+        new SearchTask(generation, pattern, ignoreCase, listener).run(visibleStartRow, visibleRowCount);
+      }
+      catch (Exception e) {
+        LOG.error("Error while searching " + pattern, e);
+      }
+    });
+  }
+
+  public void cancel() {
+    myGeneration.incrementAndGet();
+  }
+
+  public void dispose() {
+    cancel();
+    myExecutor.shutdown();
+    myTextBuffer.removeModelListener(myModelListener);
+  }
+
+  private class SearchTask {
+    private final int myTaskGeneration;
+    private final String myPattern;
+    private final boolean myIgnoreCase;
+    private final String myLowerCasePattern;
+    private final ResultListener myListener;
+    private final List<Match> myMatches = new ArrayList<>();
+    private long myLastPublishTime;
+
+    SearchTask(int generation, @NotNull String pattern, boolean ignoreCase, @NotNull ResultListener listener) {
+      myTaskGeneration = generation;
+      myPattern = pattern;
+      myIgnoreCase = ignoreCase;
+      myLowerCasePattern = pattern.toLowerCase(Locale.ROOT);
+      myListener = listener;
+    }
+
+    private boolean isCancelled() {
+      return myGeneration.get() != myTaskGeneration;
+    }
+
+    void run(int visibleStartRow, int visibleRowCount) {
+      int changeCount = myChangeCount.get();
+      boolean done = canRefine(changeCount) ? refine() : scan(visibleStartRow, visibleRowCount);
+      if (!done) {
+        return;
+      }
+      publish(true, true);
+      if (myChangeCount.get() == changeCount) {
+        myLastPattern = myPattern;
+        myLastIgnoreCase = myIgnoreCase;
+        myLastChangeCount = changeCount;
+        myLastMatches = myMatches;
+      }
+      else {
+        myLastMatches = null;
+      }
+    }
+
+    private boolean canRefine(int changeCount) {
+      return myLastMatches != null && myLastChangeCount == changeCount && myLastIgnoreCase == myIgnoreCase &&
+             (myIgnoreCase ? myLowerCasePattern.startsWith(myLastPattern.toLowerCase(Locale.ROOT))
+                           : myPattern.startsWith(myLastPattern));
+    }
+
+    /**
+     * Every match of the pattern starts at a match of the previous pattern that it extends
+     */
+    private boolean refine() {
+      List<Match> previous = myLastMatches;
+      int i = 0;
+      while (i < previous.size()) {
+        if (isCancelled()) {
+          return false;
+        }
+        int end = Math.min(i + CHUNK_ROWS, previous.size());
+        myTextBuffer.lock();
+        try {
+          long firstLine = myTextBuffer.getFirstHistoryLineNumber();
+          int historyCount = myTextBuffer.getHistoryLinesCount();
+          LogicalLine line = null;
+          for (; i < end; i++) {
+            Match match = previous.get(i);
+            if (line == null || line.myLine != match.myLine) {
+              line = readLine(match.myLine, firstLine, historyCount);
+            }
+            if (line != null && match.myOffset + myPattern.length() <= line.myText.length() &&
+                line.myText.regionMatches(myIgnoreCase, match.myOffset, myPattern, 0, myPattern.length())) {
+              myMatches.add(line.createMatch(match.myOffset, myPattern.length()));
+            }
+          }
+        }
+        finally {
+          myTextBuffer.unlock();
+        }
+        publish(false, false);
+      }
+      return true;
+    }
+
+    private boolean scan(int visibleStartRow, int visibleRowCount) {
+      long visibleStart;
+      myTextBuffer.lock();
+      try {
+        visibleStart = myTextBuffer.getFirstHistoryLineNumber() +
+                       Math.max(0, visibleStartRow + myTextBuffer.getHistoryLinesCount());
+      }
+      finally {
+        myTextBuffer.unlock();
+      }
+      List<LogicalLine> visible = readLines(visibleStart, visibleStart + visibleRowCount);
+      search(visible);
+      publish(true, false);
+
+      long visibleFrom = visible.isEmpty() ? visibleStart : visible.get(0).myLine;
+      long line = visible.isEmpty() ? visibleStart : visible.get(visible.size() - 1).getEndLine();
+      while (true) {
+        if (isCancelled()) {
+          return false;
+        }
+        List<LogicalLine> lines = readLines(line, line + CHUNK_ROWS);
+        if (lines.isEmpty()) {
+          break;
+        }
+        search(lines);
+        line = lines.get(lines.size() - 1).getEndLine();
+        publish(false, false);
+      }
+
+      line = 0;
+      while (line < visibleFrom) {
+        if (isCancelled()) {
+          return false;
+        }
+        List<LogicalLine> lines = readLines(line, Math.min(line + CHUNK_ROWS, visibleFrom));
+        if (lines.isEmpty()) {
+          break;
+        }
+        search(lines);
+        line = lines.get(lines.size() - 1).getEndLine();
+        publish(false, false);
+      }
+      return true;
+    }
+
+    private void search(@NotNull List<LogicalLine> lines) {
+      for (LogicalLine line : lines) {
+        String text = line.myText;
+        String pattern = myPattern;
+        if (myIgnoreCase) {
+          String lowerCase = text.toLowerCase(Locale.ROOT);
+          if (lowerCase.length() == text.length()) {
+            text = lowerCase;
+            pattern = myLowerCasePattern;
+          }
+          else {
+            for (int offset = 0; offset + myPattern.length() <= text.length(); offset++) {
+              if (text.regionMatches(true, offset, myPattern, 0, myPattern.length())) {
+                myMatches.add(line.createMatch(offset, myPattern.length()));
+              }
+            }
+            continue;
+          }
+        }
+        for (int offset = text.indexOf(pattern); offset >= 0; offset = text.indexOf(pattern, offset + 1)) {
+          myMatches.add(line.createMatch(offset, pattern.length()));
+        }
+      }
+    }
+
+    /**
+     * Reads lines that start in the lines [from, to), which are numbered by
+     * {@link TerminalTextBuffer#getFirstHistoryLineNumber()}, so that output written between chunks doesn't shift
+     * them. Lines removed from history meanwhile are skipped. If the first line continues a wrapped line, reading
+     * starts with the beginning of that line.
+     */
+    @NotNull
+    private List<LogicalLine> readLines(long from, long to) {
+      List<LogicalLine> lines = new ArrayList<>();
+      myTextBuffer.lock();
+      try {
+        long firstLine = myTextBuffer.getFirstHistoryLineNumber();
+        int historyCount = myTextBuffer.getHistoryLinesCount();
+        int total = historyCount + myTextBuffer.getScreenLinesCount();
+        int row = (int)Math.min(Math.max(from - firstLine, 0), total);
+        while (row > 0 && myTextBuffer.getLine(row - 1 - historyCount).isWrapped()) {
+          row--;
+        }
+        long end = Math.min(to - firstLine, total);
+        while (row < end) {
+          LogicalLine line = readLine(firstLine + row, firstLine, historyCount);
+          lines.add(line);
+          row = (int)(line.getEndLine() - firstLine);
+        }
+      }
+      finally {
+        myTextBuffer.unlock();
+      }
+      return lines;
+    }
+
+    /**
+     * Should be called under the lock of the buffer
+     *
+     * @return line starting at the line with the given number or null if there is no such line
+     */
+    @Nullable
+    private LogicalLine readLine(long lineNumber, long firstLine, int historyCount) {
+      int total = historyCount + myTextBuffer.getScreenLinesCount();
+      if (lineNumber < firstLine || lineNumber - firstLine >= total) {
+        return null;
+      }
+      StringBuilder text = new StringBuilder();
+      List<Integer> rowStarts = new ArrayList<>(1);
+      int y = (int)(lineNumber - firstLine);
+      while (y < total) {
+        TerminalLine line = myTextBuffer.getLine(y - historyCount);
+        rowStarts.add(text.length());
+        text.append(line.getText());
+        y++;
+        if (!line.isWrapped()) {
+          break;
+        }
+      }
+      return new LogicalLine(lineNumber, text.toString(), rowStarts);
+    }
+
+    private void publish(boolean force, boolean complete) {
+      long now = System.currentTimeMillis();
+      if (!force && now - myLastPublishTime < PUBLISH_INTERVAL_MS) {
+        return;
+      }
+      myLastPublishTime = now;
+
+      List<Match> matches = new ArrayList<>(myMatches);
+      matches.sort(MATCH_ORDER);
+      FindResult result = new FindResult();
+      Match last = null;
+      long firstLine;
+      int width;
+      myTextBuffer.lock();
+      try {
+        firstLine = myTextBuffer.getFirstHistoryLineNumber();
+        width = myTextBuffer.getWidth();
+      }
+      finally {
+        myTextBuffer.unlock();
+      }
+      for (Match match : matches) {
+        if (match.myLine < firstLine) {
+          continue; // the line was removed from history
+        }
+        // matches don't overlap: the next one is searched after the end of the previous one
+        if (last != null && last.myLine == match.myLine && match.myOffset < last.myOffset + myPattern.length()) {
+          continue;
+        }
+        int row = (int)(match.myLine - firstLine);
+        result.patternMatched(new Point(match.myStartX, row + match.myStartRow),
+                              new Point(match.myEndX, row + match.myEndRow), match.myText, width);
+        last = match;
+      }
+      if (!isCancelled()) {
+        myListener.resultUpdated(result, complete);
+      }
+    }
+  }
+
+  private static class LogicalLine {
+    private final long myLine; // number of the first row, see TerminalTextBuffer.getFirstHistoryLineNumber()
+    private final String myText;
+    private final List<Integer> myRowStarts;
+
+    LogicalLine(long line, @NotNull String text, @NotNull List<Integer> rowStarts) {
+      myLine = line;
+      myText = text;
+      myRowStarts = rowStarts;
+    }
+
+    long getEndLine() {
+      return myLine + myRowStarts.size();
+    }
+
+    @NotNull
+    Match createMatch(int offset, int length) {
+      int startRow = getRow(offset);
+      int endRow = getRow(offset + length - 1);
+      return new Match(myLine, offset, offset - myRowStarts.get(startRow), startRow,
+                       offset + length - 1 - myRowStarts.get(endRow), endRow, myText.substring(offset, offset + length));
+    }
+
+    /**
+     * @return index of the row that contains the offset
+     */
+    private int getRow(int offset) {
+      int i = myRowStarts.size() - 1;
+      while (i > 0 && myRowStarts.get(i) > offset) {
+        i--;
+      }
+      return i;
+    }
+  }
+
+  private static class Match {
+    private final long myLine; // number of the first row of the line
+    private final int myOffset; // in the line
+    private final int myStartX;
+    private final int myStartRow; // index of the row in the line
+    private final int myEndX;
+    private final int myEndRow;
+    private final String myText;
+
+    Match(long line, int offset, int startX, int startRow, int endX, int endRow, @NotNull String text) {
+      myLine = line;
+      myOffset = offset;
+      myStartX = startX;
+      myStartRow = startRow;
+      myEndX = endX;
+      myEndRow = endRow;
+      myText = text;
+    }
+  }
+}
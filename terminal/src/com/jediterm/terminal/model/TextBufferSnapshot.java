@@ -0,0 +1,109 @@
+package com.jediterm.terminal.model;
+
+import com.jediterm.terminal.StyledTextConsumer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Immutable copy of the lines visible in a scrolling window, it can be painted without the lock of the buffer.
+ * Lines that weren't modified since the previous snapshot share their copies with it.
+ *
+ * @author traff
+ */
+public class TextBufferSnapshot {
+  private final int myScrollOrigin;
+  private final int myCount;
+  private final TerminalLine[] mySourceLines;
+  private final int[] myModificationCounts;
+  private final TerminalLine[] myLines;
+  private final int[] myY;
+  private final int[] myStartRows;
+
+  private TextBufferSnapshot(int scrollOrigin, int count, @NotNull TerminalLine[] sourceLines,
+                             @NotNull int[] modificationCounts, @NotNull TerminalLine[] lines,
+                             @NotNull int[] y, @NotNull int[] startRows) {
+    myScrollOrigin = scrollOrigin;
+    myCount = count;
+    mySourceLines = sourceLines;
+    myModificationCounts = modificationCounts;
+    myLines = lines;
+    myY = y;
+    myStartRows = startRows;
+  }
+
+  /**
+   * @return window origin the snapshot was taken for
+   */
+  public int getScrollOrigin() {
+    return myScrollOrigin;
+  }
+
+  public int getLineCount() {
+    return myCount;
+  }
+
+  /**
+   * Passes the lines to the consumer the same way as {@link TerminalTextBuffer#processHistoryAndScreenLines}
+   */
+  public void processLines(@NotNull StyledTextConsumer consumer) {
+    for (int i = 0; i < myCount; i++) {
+      myLines[i].process(myY[i], consumer, myStartRows[i]);
+    }
+  }
+
+  static class Builder {
+    private final int myScrollOrigin;
+    private final TerminalLine[] mySourceLines;
+    private final int[] myModificationCounts;
+    private final TerminalLine[] myLines;
+    private final int[] myY;
+    private final int[] myStartRows;
+    private int myCount = 0;
+
+    private final TextBufferSnapshot myPrevious;
+    private final Map<TerminalLine, Integer> myPreviousIndexes = new IdentityHashMap<>();
+
+    Builder(int scrollOrigin, int maxCount, @Nullable TextBufferSnapshot previous) {
+      myScrollOrigin = scrollOrigin;
+      mySourceLines = new TerminalLine[maxCount];
+      myModificationCounts = new int[maxCount];
+      myLines = new TerminalLine[maxCount];
+      myY = new int[maxCount];
+      myStartRows = new int[maxCount];
+
+      myPrevious = previous;
+      if (previous != null) {
+        for (int i = 0; i < previous.myCount; i++) {
+          myPreviousIndexes.put(previous.mySourceLines[i], i);
+        }
+      }
+    }
+
+    void addLine(@NotNull TerminalLine line, int y, int startRow) {
+      Integer index = myPreviousIndexes.get(line);
+      TerminalLine copy;
+      if (index != null && myPrevious.myModificationCounts[index] == line.getModificationCount()) {
+        copy = myPrevious.myLines[index];
+      }
+      else {
+        copy = line.copy();
+      }
+
+      mySourceLines[myCount] = line;
+      myModificationCounts[myCount] = copy.getModificationCount();
+      myLines[myCount] = copy;
+      myY[myCount] = y;
+      myStartRows[myCount] = startRow;
+      myCount++;
+    }
+
+    @NotNull
+    TextBufferSnapshot build() {
+      return new TextBufferSnapshot(myScrollOrigin, myCount, mySourceLines, myModificationCounts, myLines, myY,
+                                    myStartRows);
+    }
+  }
+}
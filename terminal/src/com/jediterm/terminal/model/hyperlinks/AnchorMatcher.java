@@ -0,0 +1,191 @@
+package com.jediterm.terminal.model.hyperlinks;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Aho-Corasick automaton over the anchors of several filters. Anchors of all filters are found in one pass over
+ * a line, the cost doesn't depend on the count of filters and anchors.
+ *
+ * @author traff
+ */
+final class AnchorMatcher {
+  private static final int[] NO_ANCHORS = new int[0];
+  private static final int ASCII = 128;
+
+  private final int myFilterCount;
+  private final int[] myRootTargets = new int[ASCII]; // children of the root for ASCII chars, 0 if there is no child
+  private final char[][] myKeys; // chars of children of every node
+  private final int[][] myTargets; // children of every node in the order of myKeys
+  private final int[] myFail;
+  private final int[][] myOutputs; // anchors ending in the node, including the anchors that are its suffixes
+  private final int[] myAnchorFilters;
+  private final int[] myAnchorLengths;
+
+  /**
+   * @param anchors anchors of every filter
+   */
+  AnchorMatcher(@NotNull List<List<String>> anchors) {
+    myFilterCount = anchors.size();
+    List<Integer> anchorFilters = new ArrayList<>();
+    List<Integer> anchorLengths = new ArrayList<>();
+    List<StringBuilder> keys = new ArrayList<>();
+    List<List<Integer>> targets = new ArrayList<>();
+    List<List<Integer>> outputs = new ArrayList<>();
+    keys.add(new StringBuilder());
+    targets.add(new ArrayList<>());
+    outputs.add(new ArrayList<>());
+
+    for (int filter = 0; filter < anchors.size(); filter++) {
+      for (String anchor : anchors.get(filter)) {
+        if (anchor.isEmpty()) {
+          continue;
+        }
+        int node = 0;
+        for (int i = 0; i < anchor.length(); i++) {
+          int index = keys.get(node).indexOf(String.valueOf(anchor.charAt(i)));
+          if (index >= 0) {
+            node = targets.get(node).get(index);
+          }
+          else {
+            int child = keys.size();
+            keys.add(new StringBuilder());
+            targets.add(new ArrayList<>());
+            outputs.add(new ArrayList<>());
+            keys.get(node).append(anchor.charAt(i));
+            targets.get(node).add(child);
+            node = child;
+          }
+        }
+        outputs.get(node).add(anchorFilters.size());
+        anchorFilters.add(filter);
+        anchorLengths.add(anchor.length());
+      }
+    }
+
+    int count = keys.size();
+    myKeys = new char[count][];
+    myTargets = new int[count][];
+    for (int node = 0; node < count; node++) {
+      myKeys[node] = keys.get(node).toString().toCharArray();
+      myTargets[node] = toArray(targets.get(node));
+    }
+    for (int i = 0; i < myKeys[0].length; i++) {
+      if (myKeys[0][i] < ASCII) {
+        myRootTargets[myKeys[0][i]] = myTargets[0][i];
+      }
+    }
+
+    // breadth-first, so that fail links of shorter prefixes are known
+    myFail = new int[count];
+    myOutputs = new int[count][];
+    myOutputs[0] = toArray(outputs.get(0));
+    ArrayDeque<Integer> queue = new ArrayDeque<>();
+    for (int child : myTargets[0]) {
+      myFail[child] = 0;
+      myOutputs[child] = toArray(outputs.get(child));
+      queue.add(child);
+    }
+    while (!queue.isEmpty()) {
+      int node = queue.poll();
+      for (int i = 0; i < myKeys[node].length; i++) {
+        char c = myKeys[node][i];
+        int child = myTargets[node][i];
+        int state = myFail[node];
+        int next;
+        while ((next = child(state, c)) < 0 && state != 0) {
+          state = myFail[state];
+        }
+        myFail[child] = next >= 0 ? next : 0;
+        List<Integer> childOutputs = outputs.get(child);
+        for (int anchor : myOutputs[myFail[child]]) {
+          childOutputs.add(anchor);
+        }
+        myOutputs[child] = toArray(childOutputs);
+        queue.add(child);
+      }
+    }
+
+    myAnchorFilters = toArray(anchorFilters);
+    myAnchorLengths = toArray(anchorLengths);
+  }
+
+  private int child(int node, char c) {
+    if (node == 0 && c < ASCII) {
+      int target = myRootTargets[c];
+      return target != 0 ? target : -1;
+    }
+    char[] keys = myKeys[node];
+    for (int i = 0; i < keys.length; i++) {
+      if (keys[i] == c) {
+        return myTargets[node][i];
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return for every filter start offsets of its anchors in increasing order, or null if no anchors were found
+   */
+  @NotNull
+  int[][] match(@NotNull String text) {
+    int[][] hits = new int[myFilterCount][];
+    int[] hitCounts = new int[myFilterCount];
+    int state = 0;
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      int next;
+      while ((next = child(state, c)) < 0 && state != 0) {
+        state = myFail[state];
+      }
+      state = next >= 0 ? next : 0;
+      for (int anchor : myOutputs[state]) {
+        int filter = myAnchorFilters[anchor];
+        int[] filterHits = hits[filter];
+        if (filterHits == null) {
+          filterHits = hits[filter] = new int[4];
+        }
+        else if (hitCounts[filter] == filterHits.length) {
+          filterHits = hits[filter] = Arrays.copyOf(filterHits, filterHits.length * 2);
+        }
+        filterHits[hitCounts[filter]++] = i - myAnchorLengths[anchor] + 1;
+      }
+    }
+    for (int filter = 0; filter < myFilterCount; filter++) {
+      hits[filter] = sortedDistinct(hits[filter], hitCounts[filter]);
+    }
+    return hits;
+  }
+
+  @Nullable
+  private static int[] sortedDistinct(@Nullable int[] offsets, int count) {
+    if (offsets == null) {
+      return null;
+    }
+    Arrays.sort(offsets, 0, count);
+    int distinct = 0;
+    for (int i = 0; i < count; i++) {
+      if (distinct == 0 || offsets[distinct - 1] != offsets[i]) {
+        offsets[distinct++] = offsets[i];
+      }
+    }
+    return Arrays.copyOf(offsets, distinct);
+  }
+
+  @NotNull
+  private static int[] toArray(@NotNull List<Integer> list) {
+    if (list.isEmpty()) {
+      return NO_ANCHORS;
+    }
+    int[] result = new int[list.size()];
+    for (int i = 0; i < result.length; i++) {
+      result[i] = list.get(i);
+    }
+    return result;
+  }
+}
@@ -0,0 +1,28 @@
+package com.jediterm.terminal.model.hyperlinks;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.List;
+
+/**
+ * Filter that declares literal anchors contained in every link it finds, e.g. "://" or ".java:". Anchors of all such
+ * filters are searched in a line in one pass, and a filter is called only for lines where its anchors were found.
+ *
+ * @author traff
+ */
+public interface AnchoredHyperlinkFilter extends HyperlinkFilter {
+  @NotNull
+  List<String> getAnchors();
+
+  /**
+   * Called instead of {@link #apply(String)} when some anchors of the filter are found in the line. A filter can
+   * look for links only around the anchors, by default the whole line is passed to {@link #apply(String)}.
+   *
+   * @param anchorOffsets start offsets of the found anchors in increasing order
+   */
+  @Nullable
+  default LinkResult apply(@NotNull String line, @NotNull int[] anchorOffsets) {
+    return apply(line);
+  }
+}
@@ -5,43 +5,235 @@ import com.jediterm.terminal.HyperlinkStyle;
 import com.jediterm.terminal.TextStyle;
 import com.jediterm.terminal.model.CharBuffer;
 import com.jediterm.terminal.model.TerminalLine;
+import org.apache.log4j.Logger;
 import org.jetbrains.annotations.NotNull;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 /**
+ * Finds hyperlinks in lines and marks them with {@link HyperlinkStyle}. Lines are processed on a background thread:
+ * written lines are collected for a short delay, every line is processed once for all writes made meanwhile.
+ * Only the most recently written lines are kept, older lines have already scrolled far out of view.
+ * <p/>
+ * In the lazy mode written lines aren't processed, lines are processed when they are requested by
+ * {@link #requestHyperlinks(TerminalLine)} for the viewport. Every line is processed once for its modification count,
+ * which is kept by the line itself: compressed history lines keep their links and the processed state when they are
+ * compressed again.
+ * <p/>
+ * Anchors of all {@link AnchoredHyperlinkFilter}s are searched in one pass over a line, such a filter is called only
+ * if its anchors are found. Other filters are called for every line.
+ *
  * @author traff
  */
 public class TextProcessing {
-  private final List<HyperlinkFilter> myHyperlinkFilter;
+  private static final Logger LOG = Logger.getLogger(TextProcessing.class);
+
+  static final int DEBOUNCE_DELAY_MS = 50;
+  static final int MAX_PENDING_LINES = 512;
+
+  private static final ScheduledExecutorService ourExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+    Thread thread = new Thread(r, "JediTerm hyperlinks");
+    thread.setDaemon(true);
+    return thread;
+  });
+
+  private volatile FilterChain myFilters = new FilterChain(Collections.emptyList());
   private TextStyle myHyperlinkColor;
   private HyperlinkStyle.HighlightMode myHighlightMode;
+  private final boolean myLazy;
+
+  private final Set<TerminalLine> myPendingLines = new LinkedHashSet<>(); // guarded by itself
+  private boolean myProcessingScheduled = false;
+  private final List<Runnable> myHyperlinksListeners = new CopyOnWriteArrayList<>();
 
   public TextProcessing(TextStyle hyperlinkColor, HyperlinkStyle.HighlightMode highlightMode) {
+    this(hyperlinkColor, highlightMode, false);
+  }
+
+  public TextProcessing(TextStyle hyperlinkColor, HyperlinkStyle.HighlightMode highlightMode, boolean lazy) {
     myHyperlinkColor = hyperlinkColor;
     myHighlightMode = highlightMode;
-    myHyperlinkFilter = Lists.newArrayList();
+    myLazy = lazy;
   }
 
-  public void processHyperlinks(TerminalLine line) {
-    if (myHyperlinkFilter.isEmpty()) return;
-    line.runWithLock(() -> {
-      String lineStr = line.getText();
-      for (HyperlinkFilter filter : myHyperlinkFilter) {
-        LinkResult result = filter.apply(lineStr);
-        if (result != null) {
-          for (LinkResultItem item : result.getItems()) {
-            TextStyle style = new HyperlinkStyle(myHyperlinkColor.getForeground(), myHyperlinkColor.getBackground(), item.getLinkInfo()).withHighlightMode(myHighlightMode);
-            if (item.getStartOffset() >= 0 && item.getEndOffset() <= lineStr.length()) {
-              line.writeString(item.getStartOffset(), new CharBuffer(lineStr.substring(item.getStartOffset(), item.getEndOffset())), style);
-            }
-          }
+  public boolean isLazy() {
+    return myLazy;
+  }
+
+  /**
+   * Schedules hyperlink processing of a written line on the background thread, does nothing in the lazy mode
+   */
+  public void scheduleHyperlinks(@NotNull TerminalLine line) {
+    if (myLazy) return;
+    schedule(line);
+  }
+
+  /**
+   * Schedules hyperlink processing of a line that is shown or is close to the viewport, if the line wasn't processed
+   * since its last modification. Does nothing in the eager mode, where lines are processed when they are written.
+   */
+  public void requestHyperlinks(@NotNull TerminalLine line) {
+    if (!myLazy || line.isHyperlinksProcessed()) return;
+    schedule(line);
+  }
+
+  private void schedule(@NotNull TerminalLine line) {
+    if (myFilters.isEmpty()) return;
+    synchronized (myPendingLines) {
+      myPendingLines.add(line);
+      if (myPendingLines.size() > MAX_PENDING_LINES) {
+        Iterator<TerminalLine> it = myPendingLines.iterator();
+        it.next();
+        it.remove();
+      }
+      if (!myProcessingScheduled) {
+        myProcessingScheduled = true;
+        ourExecutor.schedule(this::processPendingLines, DEBOUNCE_DELAY_MS, TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
+  private void processPendingLines() {
+    List<TerminalLine> lines;
+    synchronized (myPendingLines) {
+      lines = new ArrayList<>(myPendingLines);
+      myPendingLines.clear();
+      myProcessingScheduled = false;
+    }
+    boolean changed = false;
+    for (TerminalLine line : lines) {
+      try {
+        changed |= processHyperlinks(line);
+      }
+      catch (Exception e) {
+        LOG.error("Error while processing hyperlinks", e);
+      }
+    }
+    if (changed) {
+      for (Runnable listener : myHyperlinksListeners) {
+        listener.run();
+      }
+    }
+  }
+
+  /**
+   * Runs the filters on the text of the line without holding its lock. The links are applied only if the line
+   * wasn't modified meanwhile, otherwise the line is scheduled to be processed again: not every modification
+   * schedules the line, e.g. deleted or erased characters don't.
+   *
+   * @return true if links were added to the line
+   */
+  public boolean processHyperlinks(@NotNull TerminalLine line) {
+    FilterChain filters = myFilters;
+    if (filters.isEmpty()) return false;
+    String lineStr;
+    int modificationCount;
+    synchronized (line) {
+      lineStr = line.getText();
+      modificationCount = line.getModificationCount();
+    }
+
+    List<LinkResultItem> items = filters.apply(lineStr);
+    if (items.isEmpty()) {
+      processed(line, modificationCount);
+      return false;
+    }
+
+    synchronized (line) {
+      if (line.getModificationCount() != modificationCount) {
+        schedule(line);
+        return false;
+      }
+      for (LinkResultItem item : items) {
+        TextStyle style = new HyperlinkStyle(myHyperlinkColor.getForeground(), myHyperlinkColor.getBackground(), item.getLinkInfo()).withHighlightMode(myHighlightMode);
+        if (item.getStartOffset() >= 0 && item.getEndOffset() <= lineStr.length()) {
+          line.writeString(item.getStartOffset(), new CharBuffer(lineStr.substring(item.getStartOffset(), item.getEndOffset())), style);
         }
       }
-    });
+      modificationCount = line.getModificationCount();
+    }
+    processed(line, modificationCount);
+    return true;
+  }
+
+  private void processed(@NotNull TerminalLine line, int modificationCount) {
+    if (myLazy) {
+      line.setHyperlinksProcessed(modificationCount);
+    }
+  }
+
+  public synchronized void addHyperlinkFilter(@NotNull HyperlinkFilter filter) {
+    List<HyperlinkFilter> filters = new ArrayList<>(myFilters.myFilters);
+    filters.add(filter);
+    myFilters = new FilterChain(filters);
+  }
+
+  /**
+   * @param listener is called on the background thread after links were added to some lines
+   */
+  public void addHyperlinksListener(@NotNull Runnable listener) {
+    myHyperlinksListeners.add(listener);
+  }
+
+  public void removeHyperlinksListener(@NotNull Runnable listener) {
+    myHyperlinksListeners.remove(listener);
   }
 
-  public void addHyperlinkFilter(@NotNull HyperlinkFilter filter) {
-    myHyperlinkFilter.add(filter);
+  /**
+   * Immutable list of filters with the matcher of their anchors
+   */
+  private static class FilterChain {
+    private final List<HyperlinkFilter> myFilters;
+    private final AnchorMatcher myAnchorMatcher; // null if there are no anchored filters
+
+    FilterChain(@NotNull List<HyperlinkFilter> filters) {
+      myFilters = filters;
+      List<List<String>> anchors = new ArrayList<>(filters.size());
+      boolean anchored = false;
+      for (HyperlinkFilter filter : filters) {
+        if (filter instanceof AnchoredHyperlinkFilter) {
+          anchors.add(((AnchoredHyperlinkFilter)filter).getAnchors());
+          anchored = true;
+        }
+        else {
+          anchors.add(Collections.emptyList());
+        }
+      }
+      myAnchorMatcher = anchored ? new AnchorMatcher(anchors) : null;
+    }
+
+    boolean isEmpty() {
+      return myFilters.isEmpty();
+    }
+
+    @NotNull
+    List<LinkResultItem> apply(@NotNull String line) {
+      int[][] anchorOffsets = myAnchorMatcher != null ? myAnchorMatcher.match(line) : null;
+      List<LinkResultItem> items = Lists.newArrayList();
+      for (int i = 0; i < myFilters.size(); i++) {
+        HyperlinkFilter filter = myFilters.get(i);
+        LinkResult result;
+        if (filter instanceof AnchoredHyperlinkFilter) {
+          int[] offsets = anchorOffsets != null ? anchorOffsets[i] : null;
+          result = offsets != null ? ((AnchoredHyperlinkFilter)filter).apply(line, offsets) : null;
+        }
+        else {
+          result = filter.apply(line);
+        }
+        if (result != null) {
+          items.addAll(result.getItems());
+        }
+      }
+      return items;
+    }
   }
 }
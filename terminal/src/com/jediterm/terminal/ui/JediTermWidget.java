@@ -9,6 +9,7 @@ import com.jediterm.terminal.debug.DebugBufferType;
 import com.jediterm.terminal.model.JediTerminal;
 import com.jediterm.terminal.model.StyleState;
 import com.jediterm.terminal.model.TerminalTextBuffer;
+import com.jediterm.terminal.model.TextBufferSearch;
 import com.jediterm.terminal.model.hyperlinks.HyperlinkFilter;
 import com.jediterm.terminal.model.hyperlinks.TextProcessing;
 import com.jediterm.terminal.ui.settings.SettingsProvider;
@@ -45,6 +46,7 @@ public class JediTermWidget extends JPanel implements TerminalSession, TerminalW
   private TerminalActionProvider myNextActionProvider;
   private JLayeredPane myInnerPanel;
   private final TextProcessing myTextProcessing;
+  private final TextBufferSearch mySearch;
 
   public JediTermWidget(@NotNull SettingsProvider settingsProvider) {
     this(80, 24, settingsProvider);
@@ -61,12 +63,15 @@ public class JediTermWidget extends JPanel implements TerminalSession, TerminalW
 
     StyleState styleState = createDefaultStyle();
 
-    myTextProcessing = new TextProcessing(settingsProvider.getHyperlinkColor(), settingsProvider.getHyperlinkHighlightingMode());
+    myTextProcessing = new TextProcessing(settingsProvider.getHyperlinkColor(), settingsProvider.getHyperlinkHighlightingMode(),
+                                          settingsProvider.processHyperlinksLazily());
 
     TerminalTextBuffer terminalTextBuffer = new TerminalTextBuffer(columns, lines, styleState, settingsProvider.getBufferMaxLinesCount(), myTextProcessing);
+    terminalTextBuffer.setHistoryMaxBytes(settingsProvider.getBufferMaxBytes());
 
     myTerminalPanel = createTerminalPanel(mySettingsProvider, styleState, terminalTextBuffer);
     myTerminal = new JediTerminal(myTerminalPanel, terminalTextBuffer, styleState);
+    mySearch = new TextBufferSearch(terminalTextBuffer);
 
     myTerminal.setModeEnabled(TerminalMode.AltSendsEscape, mySettingsProvider.altSendsEscape());
 
@@ -132,7 +137,7 @@ public class JediTermWidget extends JPanel implements TerminalSession, TerminalW
   }
 
   protected TerminalStarter createTerminalStarter(JediTerminal terminal, TtyConnector connector) {
-    return new TerminalStarter(terminal, connector, new TtyBasedArrayDataStream(connector));
+    return new TerminalStarter(terminal, connector, new TtyReaderDataStream(connector));
   }
 
   @Override
@@ -227,7 +232,9 @@ public class JediTermWidget extends JPanel implements TerminalSession, TerminalW
     if (myTerminalStarter != null) {
       myTerminalStarter.close();
     }
+    mySearch.dispose();
     myTerminalPanel.dispose();
+    getTerminalTextBuffer().dispose();
   }
 
   @Override
@@ -289,6 +296,7 @@ public class JediTermWidget extends JPanel implements TerminalSession, TerminalW
             myInnerPanel.revalidate();
             myInnerPanel.repaint();
             myFindComponent = null;
+            mySearch.cancel();
             myTerminalPanel.setFindResult(null);
             myTerminalPanel.requestFocusInWindow();
           } else if (keyEvent.getKeyCode() == KeyEvent.VK_ENTER || keyEvent.getKeyCode() == KeyEvent.VK_UP) {
@@ -329,8 +337,26 @@ public class JediTermWidget extends JPanel implements TerminalSession, TerminalW
     void prevFindResultItem(FindItem selectedItem);
   }
 
-  private void findText(String text, boolean ignoreCase) {
-    FindResult results = myTerminal.searchInTerminalTextBuffer(text, ignoreCase);
+  /**
+   * Searches on a background thread, matches are shown as they are found starting with the visible rows
+   */
+  private void findText(final String text, final boolean ignoreCase) {
+    if (text.isEmpty()) {
+      mySearch.cancel();
+      showFindResult(null);
+      return;
+    }
+    mySearch.search(text, ignoreCase, myTerminalPanel.getBoundedRangeModel().getValue(), myTerminalPanel.getRowCount(),
+      (results, complete) -> SwingUtilities.invokeLater(() -> {
+        // the result of a cancelled search can arrive after the query has changed
+        if (myFindComponent != null && text.equals(myFindComponent.getText()) &&
+            ignoreCase == myFindComponent.ignoreCase()) {
+          showFindResult(results);
+        }
+      }));
+  }
+
+  private void showFindResult(FindResult results) {
     myTerminalPanel.setFindResult(results);
     myFindComponent.onResultUpdated(results);
     myScrollBar.repaint();
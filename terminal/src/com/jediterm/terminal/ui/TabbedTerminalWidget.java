@@ -8,6 +8,7 @@ import com.jediterm.terminal.RequestOrigin;
 import com.jediterm.terminal.TerminalDisplay;
 import com.jediterm.terminal.TtyConnector;
 import com.jediterm.terminal.TtyConnectorWaitFor;
+import com.jediterm.terminal.model.HistoryMemoryBudget;
 import com.jediterm.terminal.ui.settings.TabbedSettingsProvider;
 import com.jediterm.terminal.util.JTextFieldLimit;
 import org.jetbrains.annotations.NotNull;
@@ -39,12 +40,17 @@ public class TabbedTerminalWidget extends JPanel implements TerminalWidget, Term
 
   private final Predicate<TerminalWidget> myCreateNewSessionAction;
 
+  @Nullable
+  private final HistoryMemoryBudget myHistoryMemoryBudget;
+
   private JPanel myPanel;
 
   public TabbedTerminalWidget(@NotNull TabbedSettingsProvider settingsProvider, @NotNull Predicate<TerminalWidget> createNewSessionAction) {
     super(new BorderLayout());
     mySettingsProvider = settingsProvider;
     myCreateNewSessionAction = createNewSessionAction;
+    long maxBytes = settingsProvider.getTotalBufferMaxBytes();
+    myHistoryMemoryBudget = maxBytes >= 0 ? new HistoryMemoryBudget(maxBytes) : null;
 
     setFocusTraversalPolicy(new DefaultFocusTraversalPolicy());
 
@@ -55,6 +61,9 @@ public class TabbedTerminalWidget extends JPanel implements TerminalWidget, Term
   @Override
   public TerminalSession createTerminalSession(final TtyConnector ttyConnector) {
     final JediTermWidget terminal = createInnerTerminalWidget(mySettingsProvider);
+    if (myHistoryMemoryBudget != null) {
+      terminal.getTerminalTextBuffer().setHistoryMemoryBudget(myHistoryMemoryBudget);
+    }
     terminal.createTerminalSession(ttyConnector);
     terminal.setNextProvider(this);
 
@@ -87,6 +96,14 @@ public class TabbedTerminalWidget extends JPanel implements TerminalWidget, Term
     return terminal;
   }
 
+  /**
+   * @return memory budget shared by history of all tabs, or null if it isn't limited
+   */
+  @Nullable
+  public HistoryMemoryBudget getHistoryMemoryBudget() {
+    return myHistoryMemoryBudget;
+  }
+
   protected JediTermWidget createInnerTerminalWidget(TabbedSettingsProvider settingsProvider) {
     return new JediTermWidget(settingsProvider);
   }
@@ -33,6 +33,7 @@ import java.lang.ref.WeakReference;
 import java.net.URI;
 import java.text.AttributedCharacterIterator;
 import java.text.CharacterIterator;
+import java.util.BitSet;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -68,6 +69,7 @@ public class TerminalPanel extends JComponent implements TerminalDisplay, Clipbo
 
   private SettingsProvider mySettingsProvider;
   final private TerminalTextBuffer myTerminalTextBuffer;
+  private TextBufferSnapshot mySnapshot; // last painted lines, unchanged lines are reused by the next snapshot
 
   final private StyleState myStyleState;
 
@@ -84,11 +86,14 @@ public class TerminalPanel extends JComponent implements TerminalDisplay, Clipbo
   private String myWindowTitle = "Terminal";
 
   private TerminalActionProvider myNextActionProvider;
+  private final char[] myCursorChars = new char[2]; // char under the cursor, it's painted on the EDT only
   private String myInputMethodUncommittedChars;
 
   private Timer myRepaintTimer;
   private AtomicInteger scrollDy = new AtomicInteger(0);
   private AtomicBoolean needRepaint = new AtomicBoolean(true);
+  private final BitSet myDamagedRows = new BitSet(); // screen rows to repaint, guarded by itself
+  private boolean myFullRepaintNeeded = true;
 
   private int myMaxFPS = 50;
   private int myBlinkingPeriod = 500;
@@ -119,16 +124,61 @@ public class TerminalPanel extends JComponent implements TerminalDisplay, Clipbo
       public void modelChanged() {
         repaint();
       }
+
+      @Override
+      public void modelChanged(@NotNull TerminalDamage damage) {
+        if (damage.isFullRepaint() || damage.isHistoryChanged() || damage.getScrollDelta() != 0) {
+          // the content moves relative to the viewport
+          repaint();
+        }
+        else if (!damage.isEmpty()) {
+          repaintRows(damage.getFirstDirtyRow(), damage.getLastDirtyRow());
+        }
+      }
     });
   }
 
   @Override
   public void repaint() {
+    synchronized (myDamagedRows) {
+      myFullRepaintNeeded = true;
+    }
+    needRepaint.set(true);
+  }
+
+  /**
+   * Repaints only the given screen rows on the next frame
+   */
+  private void repaintRows(int firstRow, int lastRow) {
+    if (firstRow < 0 || lastRow < firstRow) {
+      return;
+    }
+    synchronized (myDamagedRows) {
+      myDamagedRows.set(firstRow, lastRow + 1);
+    }
     needRepaint.set(true);
   }
 
   private void doRepaint() {
-    super.repaint();
+    int firstRow;
+    int lastRow;
+    synchronized (myDamagedRows) {
+      boolean full = myFullRepaintNeeded;
+      firstRow = myDamagedRows.nextSetBit(0);
+      lastRow = myDamagedRows.length() - 1;
+      myDamagedRows.clear();
+      myFullRepaintNeeded = false;
+      if (full) {
+        firstRow = -1;
+      }
+    }
+    if (firstRow < 0) {
+      super.repaint();
+    }
+    else {
+      int y = (firstRow - myClientScrollOrigin) * myCharSize.height;
+      super.repaint(0, y, getWidth(), (lastRow - firstRow + 1) * myCharSize.height);
+    }
   }
 
   @Deprecated
@@ -728,79 +778,104 @@ public class TerminalPanel extends JComponent implements TerminalDisplay, Clipbo
 
     gfx.fillRect(0, 0, getWidth(), getHeight());
 
+    final TextBufferSnapshot snapshot;
+    CharBuffer cursorChar = null;
+    TextStyle cursorStyle = null;
+    final int cursorX;
+    final int cursorY;
+    final int historyLinesCount;
+    // the lock is held only to copy changed lines, painting doesn't block the emulator
+    myTerminalTextBuffer.lock();
     try {
-      myTerminalTextBuffer.lock();
+      cursorX = myCursor.getCoordX();
+      cursorY = myCursor.getCoordY();
+      historyLinesCount = myTerminalTextBuffer.getHistoryLinesCount();
       // update myClientScrollOrigin as scrollArea might have been invoked after last WeakRedrawTimer action
       updateScrolling(false);
-      myTerminalTextBuffer.processHistoryAndScreenLines(myClientScrollOrigin, myTermSize.height, new StyledTextConsumer() {
-        final int columnCount = getColumnCount();
-
-        @Override
-        public void consume(int x, int y, @NotNull TextStyle style, @NotNull CharBuffer characters, int startRow) {
-          int row = y - startRow;
-          drawCharacters(x, row, style, characters, gfx);
-
-          if (myFindResult != null) {
-            List<Pair<Integer, Integer>> ranges = myFindResult.getRanges(characters);
-            if (ranges != null) {
-              for (Pair<Integer, Integer> range : ranges) {
-                TextStyle foundPatternStyle = getFoundPattern(style);
-                CharBuffer foundPatternChars = characters.subBuffer(range);
+      snapshot = myTerminalTextBuffer.createSnapshot(myClientScrollOrigin, myTermSize.height, mySnapshot);
+      // lazy hyperlinks are found for the viewport and a screen above and below it
+      myTerminalTextBuffer.requestHyperlinks(myClientScrollOrigin - myTermSize.height, 3 * myTermSize.height);
+      if ((myClientScrollOrigin + getRowCount() > cursorY) && !hasUncommittedChars()) {
+        TerminalLine line = myTerminalTextBuffer.getLine(cursorY);
+        myCursorChars[0] = line.charAt(cursorX);
+        int length = 1;
+        if (Character.isHighSurrogate(myCursorChars[0])) {
+          myCursorChars[1] = line.charAt(cursorX + 1);
+          length = 2;
+        }
+        cursorChar = new CharBuffer(myCursorChars, 0, length);
+        TextStyle style = line.getStyleAt(cursorX);
+        cursorStyle = style != null ? style : myStyleState.getCurrent();
+      }
+    } finally {
+      myTerminalTextBuffer.unlock();
+    }
+    mySnapshot = snapshot;
 
-                drawCharacters(x + range.first, row, foundPatternStyle, foundPatternChars, gfx);
-              }
-            }
-          }
+    final int scrollOrigin = snapshot.getScrollOrigin();
+    snapshot.processLines(new StyledTextConsumer() {
+      final int columnCount = getColumnCount();
 
-          if (mySelection != null) {
-            Pair<Integer, Integer> interval = mySelection.intersect(x, row + myClientScrollOrigin, characters.length());
-            if (interval != null) {
-              TextStyle selectionStyle = getSelectionStyle(style);
-              CharBuffer selectionChars = characters.subBuffer(interval.first - x, interval.second);
+      @Override
+      public void consume(int x, int y, @NotNull TextStyle style, @NotNull CharBuffer characters, int startRow) {
+        int row = y - startRow;
+        drawCharacters(x, row, style, characters, gfx);
+
+        SubstringFinder.FindResult findResult = myFindResult;
+        if (findResult != null) {
+          List<Pair<Integer, Integer>> ranges = findResult.getRanges(row + scrollOrigin + historyLinesCount);
+          if (ranges != null) {
+            for (Pair<Integer, Integer> range : ranges) {
+              int start = Math.max(range.first, x);
+              int end = Math.min(range.second, x + characters.length());
+              if (start < end) {
+                TextStyle foundPatternStyle = getFoundPattern(style);
+                CharBuffer foundPatternChars = characters.subBuffer(start - x, end - start);
 
-              drawCharacters(interval.first, row, selectionStyle, selectionChars, gfx);
+                drawCharacters(start, row, foundPatternStyle, foundPatternChars, gfx);
+              }
             }
           }
         }
 
-        @Override
-        public void consumeNul(int x, int y, int nulIndex, TextStyle style, CharBuffer characters, int startRow) {
-          int row = y - startRow;
-          if (mySelection != null) {
-            // compute intersection with all NUL areas, non-breaking
-            Pair<Integer, Integer> interval = mySelection.intersect(nulIndex, row + myClientScrollOrigin, columnCount - nulIndex);
-            if (interval != null) {
-              TextStyle selectionStyle = getSelectionStyle(style);
-              drawCharacters(x, row, selectionStyle, characters, gfx);
-              return;
-            }
+        if (mySelection != null) {
+          Pair<Integer, Integer> interval = mySelection.intersect(x, row + scrollOrigin, characters.length());
+          if (interval != null) {
+            TextStyle selectionStyle = getSelectionStyle(style);
+            CharBuffer selectionChars = characters.subBuffer(interval.first - x, interval.second);
+
+            drawCharacters(interval.first, row, selectionStyle, selectionChars, gfx);
           }
-          drawCharacters(x, row, style, characters, gfx);
         }
+      }
 
-        @Override
-        public void consumeQueue(int x, int y, int nulIndex, int startRow) {
-          if (x < columnCount) {
-            consumeNul(x, y, nulIndex, TextStyle.EMPTY, new CharBuffer(CharUtils.EMPTY_CHAR, columnCount - x), startRow);
+      @Override
+      public void consumeNul(int x, int y, int nulIndex, TextStyle style, CharBuffer characters, int startRow) {
+        int row = y - startRow;
+        if (mySelection != null) {
+          // compute intersection with all NUL areas, non-breaking
+          Pair<Integer, Integer> interval = mySelection.intersect(nulIndex, row + scrollOrigin, columnCount - nulIndex);
+          if (interval != null) {
+            TextStyle selectionStyle = getSelectionStyle(style);
+            drawCharacters(x, row, selectionStyle, characters, gfx);
+            return;
           }
         }
-      });
+        drawCharacters(x, row, style, characters, gfx);
+      }
 
-      int cursorY = myCursor.getCoordY();
-      if ((myClientScrollOrigin + getRowCount() > cursorY) && !hasUncommittedChars()) {
-        int cursorX = myCursor.getCoordX();
-        Pair<Character, TextStyle> sc = myTerminalTextBuffer.getStyledCharAt(cursorX, cursorY);
-        String cursorChar = "" + sc.first;
-        if (Character.isHighSurrogate(sc.first)) {
-          cursorChar += myTerminalTextBuffer.getStyledCharAt(cursorX + 1, cursorY).first;
+      @Override
+      public void consumeQueue(int x, int y, int nulIndex, int startRow) {
+        if (x < columnCount) {
+          consumeNul(x, y, nulIndex, TextStyle.EMPTY, CharBuffer.spaces(columnCount - x), startRow);
         }
-        TextStyle normalStyle = sc.second != null ? sc.second : myStyleState.getCurrent();
-        TextStyle selectionStyle = getSelectionStyle(normalStyle);
-        boolean inSelection = inSelection(cursorX, cursorY);
-        myCursor.drawCursor(cursorChar, gfx, inSelection ? selectionStyle : normalStyle);
       }
-    } finally {
-      myTerminalTextBuffer.unlock();
+    });
+
+    if (cursorChar != null) {
+      TextStyle selectionStyle = getSelectionStyle(cursorStyle);
+      boolean inSelection = inSelection(cursorX, cursorY);
+      myCursor.drawCursor(cursorChar, gfx, inSelection ? selectionStyle : cursorStyle);
     }
 
     drawInputMethodUncommitedChars(gfx);
@@ -984,6 +1059,7 @@ public class TerminalPanel extends JComponent implements TerminalDisplay, Clipbo
     }
 
     public void setY(int y) {
+      repaintCursorRow();
       myCursorCoordinates.y = y;
       cursorChanged();
     }
@@ -1011,7 +1087,12 @@ public class TerminalPanel extends JComponent implements TerminalDisplay, Clipbo
     public void cursorChanged() {
       myCursorHasChanged = true;
       myLastCursorChange = System.currentTimeMillis();
-      repaint();
+      repaintCursorRow();
+    }
+
+    private void repaintCursorRow() {
+      int row = myCursorCoordinates.y - 1;
+      repaintRows(row, row);
     }
 
     private boolean cursorShouldChangeBlinkState(long currentTime) {
@@ -1027,7 +1108,7 @@ public class TerminalPanel extends JComponent implements TerminalDisplay, Clipbo
         myCursorIsShown = !myCursorIsShown;
         myLastCursorChange = currentTime;
         myCursorHasChanged = false;
-        repaint();
+        repaintCursorRow();
       }
     }
 
@@ -1049,6 +1130,10 @@ public class TerminalPanel extends JComponent implements TerminalDisplay, Clipbo
     }
 
     public void drawCursor(String c, Graphics2D gfx, TextStyle style) {
+      drawCursor(new CharBuffer(c), gfx, style);
+    }
+
+    public void drawCursor(CharBuffer c, Graphics2D gfx, TextStyle style) {
       TerminalCursorState state = computeCursorState();
 
       // hidden: do nothing
@@ -1060,7 +1145,7 @@ public class TerminalPanel extends JComponent implements TerminalDisplay, Clipbo
         if (y >= 0 && y < myTermSize.height) {
           if (state == TerminalCursorState.SHOWING) {
             TextStyle styleToDraw = getInversedStyle(style);
-            drawCharacters(x, y, styleToDraw, new CharBuffer(c), gfx);
+            drawCharacters(x, y, styleToDraw, c, gfx);
           } else if (state == TerminalCursorState.NO_FOCUS) {
             int xCoord = x * myCharSize.width + getInsetX();
             int yCoord = y * myCharSize.height;
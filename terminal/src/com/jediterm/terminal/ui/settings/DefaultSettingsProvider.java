@@ -121,6 +121,11 @@ public class DefaultSettingsProvider implements SettingsProvider {
     return HyperlinkStyle.HighlightMode.HOVER;
   }
 
+  @Override
+  public boolean processHyperlinksLazily() {
+    return false;
+  }
+
   @Override
   public boolean useInverseSelectionColor() {
     return true;
@@ -186,6 +191,11 @@ public class DefaultSettingsProvider implements SettingsProvider {
     return LinesBuffer.DEFAULT_MAX_LINES_COUNT;
   }
 
+  @Override
+  public long getBufferMaxBytes() {
+    return -1;
+  }
+
   @Override
   public boolean altSendsEscape() {
     return false;
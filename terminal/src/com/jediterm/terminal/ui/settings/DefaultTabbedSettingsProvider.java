@@ -34,4 +34,9 @@ public class DefaultTabbedSettingsProvider extends DefaultSettingsProvider imple
                            ? KeyStroke.getKeyStroke(KeyEvent.VK_LEFT, InputEvent.CTRL_DOWN_MASK)
                            : KeyStroke.getKeyStroke(KeyEvent.VK_LEFT, InputEvent.ALT_DOWN_MASK)};
   }
+
+  @Override
+  public long getTotalBufferMaxBytes() {
+    return -1;
+  }
 }
@@ -15,4 +15,11 @@ public interface TabbedSettingsProvider extends SettingsProvider {
   KeyStroke[] getNextTabKeyStrokes();
 
   KeyStroke[] getPreviousTabKeyStrokes();
+
+  /**
+   * @return max count of bytes retained by history of all tabs together, negative value means no limit
+   */
+  default long getTotalBufferMaxBytes() {
+    return -1;
+  }
 }
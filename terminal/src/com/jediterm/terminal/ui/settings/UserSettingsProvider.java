@@ -25,6 +25,14 @@ public interface UserSettingsProvider {
 
   HyperlinkStyle.HighlightMode getHyperlinkHighlightingMode();
 
+  /**
+   * @return true if hyperlinks are searched only in lines that are shown or are close to the viewport, otherwise
+   * all written lines are processed
+   */
+  default boolean processHyperlinksLazily() {
+    return false;
+  }
+
   boolean useInverseSelectionColor();
 
   boolean copyOnSelect();
@@ -49,7 +57,18 @@ public interface UserSettingsProvider {
 
   boolean forceActionOnMouseReporting();
 
+  /**
+   * @return max count of history lines, negative value means that history isn't limited, then old lines are kept
+   * in a temporary file
+   */
   int getBufferMaxLinesCount();
+
+  /**
+   * @return max count of bytes retained by history of a session, negative value means no limit
+   */
+  default long getBufferMaxBytes() {
+    return -1;
+  }
   
   boolean altSendsEscape();
 
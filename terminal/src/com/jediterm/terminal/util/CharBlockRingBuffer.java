@@ -0,0 +1,185 @@
+package com.jediterm.terminal.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Bounded single-producer/single-consumer ring of char blocks.
+ * <p>
+ * Block arrays are preallocated and owned by the ring: producer fills {@link #nextFreeBlock()} and
+ * {@link #publish(int)}es it, consumer reads {@link #nextBlock()} in place and {@link #release()}s it when done.
+ * Only waiting on an empty or a full ring parks a thread, all other operations are lock-free.
+ *
+ * @author traff
+ */
+public class CharBlockRingBuffer {
+  private final char[][] myBlocks;
+  private final int[] myLengths;
+  private final int myMask;
+
+  /**
+   * Index of the next block to be consumed, written only by consumer
+   */
+  private final AtomicLong myHead = new AtomicLong();
+  /**
+   * Index of the next block to be produced, written only by producer
+   */
+  private final AtomicLong myTail = new AtomicLong();
+
+  private volatile Thread myWaitingProducer;
+  private volatile Thread myWaitingConsumer;
+  private volatile boolean myClosed = false;
+
+  private final AtomicLong myProducerWaits = new AtomicLong();
+  private final AtomicLong myConsumerWaits = new AtomicLong();
+  private volatile int myMaxPendingBlocks;
+
+  /**
+   * @param capacity   number of blocks, is rounded up to a power of two
+   * @param blockSize  size of each block in chars
+   */
+  public CharBlockRingBuffer(int capacity, int blockSize) {
+    int size = capacity <= 1 ? 1 : Integer.highestOneBit(capacity - 1) << 1;
+    myBlocks = new char[size][blockSize];
+    myLengths = new int[size];
+    myMask = size - 1;
+  }
+
+  public int getCapacity() {
+    return myBlocks.length;
+  }
+
+  /**
+   * Producer side. Waits until there is a free block.
+   *
+   * @throws InterruptedException if the thread is interrupted or the ring is closed
+   */
+  public char[] nextFreeBlock() throws InterruptedException {
+    long tail = myTail.get();
+    if (tail - myHead.get() == myBlocks.length) {
+      myProducerWaits.incrementAndGet();
+      myWaitingProducer = Thread.currentThread();
+      while (tail - myHead.get() == myBlocks.length) {
+        if (!myClosed) {
+          LockSupport.park(this);
+        }
+        if (Thread.interrupted() || myClosed) {
+          myWaitingProducer = null;
+          throw new InterruptedException();
+        }
+      }
+      myWaitingProducer = null;
+    }
+    return myBlocks[(int)(tail & myMask)];
+  }
+
+  /**
+   * Producer side. Makes the block returned by {@link #nextFreeBlock()} available to consumer.
+   *
+   * @param length number of chars in block, value <= 0 is passed through to consumer as is
+   */
+  public void publish(int length) {
+    long tail = myTail.get();
+    myLengths[(int)(tail & myMask)] = length;
+    myTail.set(tail + 1);
+
+    int pending = (int)(tail + 1 - myHead.get());
+    if (pending > myMaxPendingBlocks) {
+      myMaxPendingBlocks = pending;
+    }
+
+    Thread consumer = myWaitingConsumer;
+    if (consumer != null) {
+      LockSupport.unpark(consumer);
+    }
+  }
+
+  /**
+   * Consumer side. Waits until there is a published block. The block stays owned by consumer until {@link #release()}.
+   *
+   * @return null if the ring is closed and there are no published blocks
+   */
+  public char[] nextBlock() throws InterruptedException {
+    long head = myHead.get();
+    if (head == myTail.get()) {
+      myConsumerWaits.incrementAndGet();
+      myWaitingConsumer = Thread.currentThread();
+      while (head == myTail.get()) {
+        if (myClosed) {
+          myWaitingConsumer = null;
+          return null;
+        }
+        LockSupport.park(this);
+        if (Thread.interrupted()) {
+          myWaitingConsumer = null;
+          throw new InterruptedException();
+        }
+      }
+      myWaitingConsumer = null;
+    }
+    return myBlocks[(int)(head & myMask)];
+  }
+
+  /**
+   * Consumer side. Length of the block returned by {@link #nextBlock()}.
+   */
+  public int blockLength() {
+    return myLengths[(int)(myHead.get() & myMask)];
+  }
+
+  /**
+   * Consumer side. Returns the block returned by {@link #nextBlock()} to producer.
+   */
+  public void release() {
+    myHead.set(myHead.get() + 1);
+
+    Thread producer = myWaitingProducer;
+    if (producer != null) {
+      LockSupport.unpark(producer);
+    }
+  }
+
+  /**
+   * Wakes up both sides: a waiting producer fails, a consumer gets the blocks published so far and then null
+   */
+  public void close() {
+    myClosed = true;
+    Thread producer = myWaitingProducer;
+    if (producer != null) {
+      LockSupport.unpark(producer);
+    }
+    Thread consumer = myWaitingConsumer;
+    if (consumer != null) {
+      LockSupport.unpark(consumer);
+    }
+  }
+
+  public boolean isClosed() {
+    return myClosed;
+  }
+
+  public int getPendingBlocks() {
+    return (int)(myTail.get() - myHead.get());
+  }
+
+  /**
+   * @return the largest number of published but not yet released blocks seen so far
+   */
+  public int getMaxPendingBlocks() {
+    return myMaxPendingBlocks;
+  }
+
+  /**
+   * @return how many times producer had to wait because the ring was full, i.e. consumer fell behind
+   */
+  public long getProducerWaits() {
+    return myProducerWaits.get();
+  }
+
+  /**
+   * @return how many times consumer had to wait because the ring was empty
+   */
+  public long getConsumerWaits() {
+    return myConsumerWaits.get();
+  }
+}
@@ -31,23 +31,16 @@ public class CharUtils {
   public static byte[] VT102_RESPONSE = makeCode(ESC, '[', '?', '6', 'c');
 
   public static String getNonControlCharacters(int maxChars, char[] buf, int offset, int charsLength) {
-    int len = Math.min(maxChars, charsLength);
-
-    final int origLen = len;
-    char tmp;
-    while (len > 0) {
-      tmp = buf[offset++];
-      if (0x20 <= tmp) { //stop when we reach control chars
-        len--;
-        continue;
-      }
-      offset--;
-      break;
-    }
-
-    int length = origLen - len;
+    return new String(buf, offset, countNonControlCharacters(maxChars, buf, offset, charsLength));
+  }
 
-    return new String(buf, offset - length, length);
+  public static int countNonControlCharacters(int maxChars, char[] buf, int offset, int charsLength) {
+    int end = offset + Math.min(maxChars, charsLength);
+    int i = offset;
+    while (i < end && 0x20 <= buf[i]) { //stop when we reach control chars
+      i++;
+    }
+    return i - offset;
   }
 
   public static int countDoubleWidthCharacters(char[] buf, int start, int length, boolean ambiguousIsDWC) {
@@ -0,0 +1,39 @@
+package com.jediterm.terminal.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Decodes a byte stream that arrives by chunks. A multibyte character split between chunks is decoded with
+ * the next chunk instead of being replaced in both.
+ *
+ * @author traff
+ */
+public class ChunkDecoder {
+  private final CharsetDecoder myDecoder;
+  private ByteBuffer myPending = ByteBuffer.allocate(0); // incomplete character from the previous chunk
+
+  public ChunkDecoder(@NotNull Charset charset) {
+    myDecoder = charset.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+  }
+
+  @NotNull
+  public synchronized char[] decode(@NotNull byte[] buf, int offset, int length) {
+    ByteBuffer in = ByteBuffer.allocate(myPending.remaining() + length);
+    in.put(myPending).put(buf, offset, length).flip();
+    CharBuffer out = CharBuffer.allocate((int)Math.ceil(in.remaining() * (double)myDecoder.maxCharsPerByte()));
+    myDecoder.decode(in, out, false);
+    myPending = in;
+    out.flip();
+    char[] chars = new char[out.remaining()];
+    out.get(chars);
+    return chars;
+  }
+}
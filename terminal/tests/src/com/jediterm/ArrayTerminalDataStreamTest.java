@@ -0,0 +1,142 @@
+package com.jediterm;
+
+import com.jediterm.terminal.ArrayTerminalDataStream;
+import com.jediterm.terminal.TerminalDataStream;
+import com.jediterm.terminal.TerminalOutputStream;
+import com.jediterm.terminal.emulator.Emulator;
+import com.jediterm.terminal.emulator.JediEmulator;
+import com.jediterm.terminal.model.JediTerminal;
+import com.jediterm.terminal.model.StyleState;
+import com.jediterm.terminal.model.TerminalTextBuffer;
+import com.jediterm.util.BackBufferDisplay;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+
+/**
+ * @author traff
+ */
+public class ArrayTerminalDataStreamTest extends TestCase {
+  public void testPushBack() throws IOException {
+    ArrayTerminalDataStream stream = new ArrayTerminalDataStream("cd".toCharArray());
+
+    stream.pushChar('b');
+    stream.pushBackBuffer("xa".toCharArray(), 1);
+    stream.pushChar('_');
+
+    assertEquals("_xbcd", readAll(stream));
+  }
+
+  public void testPushBackManyCharsToFullBuffer() throws IOException {
+    int count = 1000000;
+    ArrayTerminalDataStream stream = new ArrayTerminalDataStream("end".toCharArray());
+
+    for (int i = 0; i < count; i++) {
+      stream.pushChar((char)('a' + i % 26));
+    }
+    char[] prefix = "prefix".toCharArray();
+    for (int i = 0; i < 1000; i++) {
+      stream.pushBackBuffer(prefix, prefix.length);
+    }
+
+    String result = readAll(stream);
+    assertEquals(1000 * prefix.length + count + 3, result.length());
+    assertTrue(result.startsWith("prefixprefix"));
+    assertEquals('a' + (count - 1) % 26, result.charAt(1000 * prefix.length));
+    assertTrue(result.endsWith("end"));
+  }
+
+  public void testRunIsWrittenStartingWithReadChar() throws IOException {
+    StyleState state = new StyleState();
+    TerminalTextBuffer terminalTextBuffer = new TerminalTextBuffer(10, 2, state);
+    JediTerminal terminal = new JediTerminal(new BackBufferDisplay(terminalTextBuffer), terminalTextBuffer, state);
+    ArrayTerminalDataStream stream = new ArrayTerminalDataStream("abc\ryz".toCharArray());
+
+    char first = stream.getChar();
+    assertEquals(3, stream.writeNonControlCharacters(first, 10, terminal));
+    assertEquals('\r', stream.getChar());
+    terminal.carriageReturn();
+    terminal.newLine();
+
+    stream.getChar();
+    assertEquals(2, stream.writeNonControlCharacters('x', 10, terminal)); // the char isn't in the buffer
+    assertEquals("abc       \n" +
+                 "xz        \n", terminalTextBuffer.getScreenLines());
+  }
+
+  /**
+   * Pushing back a buffer that is longer than the free room in front of the unread data grows the buffer once
+   * instead of shifting the data for every push.
+   */
+  public void testPushBackLongerThanHeadroom() throws IOException {
+    ArrayTerminalDataStream stream = new ArrayTerminalDataStream("xyend".toCharArray());
+    assertEquals('x', stream.getChar());
+    assertEquals('y', stream.getChar());
+
+    char[] chunk = new char[5000];
+    for (int i = 0; i < chunk.length; i++) {
+      chunk[i] = (char)('a' + i % 26);
+    }
+    for (int i = 0; i < 200; i++) {
+      stream.pushBackBuffer(chunk, chunk.length);
+    }
+
+    String result = readAll(stream);
+    assertEquals(200 * chunk.length + 3, result.length());
+    assertEquals(new String(chunk), result.substring(0, chunk.length));
+    assertTrue(result.endsWith("end"));
+  }
+
+  /**
+   * Sequences with long runs of intermediate chars used to stall the emulator when they were pushed back to the
+   * stream. Parser keeps its state now, but input should still be processed in roughly linear time, so that this
+   * test finishes quickly.
+   */
+  public void testPathologicalIntermediates() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 2000; i++) {
+      sb.append("\033[");
+      for (int j = 0; j < 200; j++) {
+        sb.append(j % 2 == 0 ? '!' : '$');
+      }
+      sb.append("p\033");
+      for (int j = 0; j < 200; j++) {
+        sb.append('#');
+      }
+      sb.append('8');
+    }
+    sb.append("done");
+
+    StyleState state = new StyleState();
+    TerminalTextBuffer terminalTextBuffer = new TerminalTextBuffer(10, 2, state);
+    JediTerminal terminal = new JediTerminal(new BackBufferDisplay(terminalTextBuffer), terminalTextBuffer, state);
+    Emulator emulator = new JediEmulator(new ArrayTerminalDataStream(sb.toString().toCharArray()),
+                                         new DevNullTerminalOutputStream(), terminal);
+    while (emulator.hasNext()) {
+      emulator.next();
+    }
+
+    assertEquals("done      \n" +
+                 "          \n", terminalTextBuffer.getScreenLines());
+  }
+
+  private static String readAll(ArrayTerminalDataStream stream) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    try {
+      while (true) {
+        sb.append(stream.getChar());
+      }
+    }
+    catch (TerminalDataStream.EOF ignored) {
+    }
+    return sb.toString();
+  }
+
+  private static class DevNullTerminalOutputStream implements TerminalOutputStream {
+    @Override
+    public void sendBytes(byte[] response) {}
+
+    @Override
+    public void sendString(String string) {}
+  }
+}
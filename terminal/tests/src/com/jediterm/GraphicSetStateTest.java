@@ -0,0 +1,40 @@
+package com.jediterm;
+
+import com.jediterm.terminal.emulator.charset.CharacterSet;
+import com.jediterm.terminal.emulator.charset.GraphicSetState;
+import junit.framework.TestCase;
+
+/**
+ * @author traff
+ */
+public class GraphicSetStateTest extends TestCase {
+  public void testIdentityMapping() {
+    GraphicSetState state = new GraphicSetState();
+    assertTrue(state.isIdentityMapping());
+
+    char[] buf = "aqé\u0085中".toCharArray();
+    state.mapInPlace(buf, 0, buf.length);
+    assertEquals("aqé\u0000中", new String(buf));
+  }
+
+  public void testDecSpecialGraphics() {
+    GraphicSetState state = new GraphicSetState();
+    state.designateGraphicSet(0, CharacterSet.DEC_SPECIAL_GRAPHICS);
+    assertFalse(state.isIdentityMapping());
+
+    char[] buf = "xqx".toCharArray();
+    state.mapInPlace(buf, 1, 1);
+    assertEquals("x─x", new String(buf));
+  }
+
+  public void testSingleShiftAppliesToFirstCharOnly() {
+    GraphicSetState state = new GraphicSetState();
+    state.overrideGL(1);
+    assertFalse(state.isIdentityMapping());
+
+    char[] buf = "qq".toCharArray();
+    state.mapInPlace(buf, 0, buf.length);
+    assertEquals("─q", new String(buf));
+    assertTrue(state.isIdentityMapping());
+  }
+}
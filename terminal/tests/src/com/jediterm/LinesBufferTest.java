@@ -1,8 +1,18 @@
 package com.jediterm;
 
+import com.jediterm.terminal.HyperlinkStyle;
+import com.jediterm.terminal.TerminalColor;
 import com.jediterm.terminal.TextStyle;
 import com.jediterm.terminal.model.CharBuffer;
+import com.jediterm.terminal.model.HistoryMemoryBudget;
 import com.jediterm.terminal.model.LinesBuffer;
+import com.jediterm.terminal.model.StyleState;
+import com.jediterm.terminal.model.TerminalLine;
+import com.jediterm.terminal.model.TerminalTextBuffer;
+import com.jediterm.terminal.model.hyperlinks.LinkInfo;
+import com.jediterm.terminal.model.hyperlinks.LinkResult;
+import com.jediterm.terminal.model.hyperlinks.LinkResultItem;
+import com.jediterm.terminal.model.hyperlinks.TextProcessing;
 import com.jediterm.util.CharBufferUtil;
 import junit.framework.TestCase;
 import org.jetbrains.annotations.NotNull;
@@ -114,4 +124,204 @@ public class LinesBufferTest extends TestCase {
                  "   Hi!", buf.getLines());
   }
 
+  public void testBoundedBufferDropsOldestLines() {
+    LinesBuffer history = new LinesBuffer(3, null);
+    for (int i = 1; i <= 50; i++) {
+      history.addNewLine(TextStyle.EMPTY, CharBufferUtil.create("Line " + i));
+    }
+
+    assertEquals(3, history.getLineCount());
+    assertEquals("Line 48\n" +
+                 "Line 49\n" +
+                 "Line 50", history.getLines());
+    assertEquals("Line 48", history.getLine(0).getText());
+    assertEquals("Line 50", history.getLine(2).getText());
+
+    LinesBuffer text = createLinesBuffer();
+    text.addNewLine(TextStyle.EMPTY, CharBufferUtil.create(LINE_1));
+    history.moveBottomLinesTo(2, text);
+    assertEquals("Line 48", history.getLines());
+    assertEquals("Line 49\n" +
+                 "Line 50\n" +
+                 "Line 1", text.getLines());
+
+    text.moveTopLinesTo(3, history);
+    assertEquals("Line 49\n" +
+                 "Line 50\n" +
+                 "Line 1", history.getLines());
+    assertEquals(3, history.getLineCount());
+    assertEquals(0, text.getLineCount());
+  }
+
+  public void testInsertAndDeleteLinesInRegion() {
+    TerminalTextBuffer textBuffer = new TerminalTextBuffer(6, 5, new StyleState(), 1, null);
+    for (int i = 1; i <= 5; i++) {
+      textBuffer.writeString(0, i, CharBufferUtil.create("Line " + i));
+    }
+
+    TerminalLine line4 = textBuffer.getLine(3);
+    textBuffer.insertLines(1, 1, 4);
+    assertEquals("Line 1\n" +
+                 "      \n" +
+                 "Line 2\n" +
+                 "Line 3\n" +
+                 "Line 5\n", textBuffer.getScreenLines());
+    assertSame("line pushed out of the region is reused", line4, textBuffer.getLine(1));
+
+    textBuffer.scrollArea(1, -2, 4);
+    assertEquals("Line 2\n" +
+                 "Line 3\n" +
+                 "      \n" +
+                 "      \n" +
+                 "Line 5\n", textBuffer.getScreenLines());
+    assertEquals(1, textBuffer.getHistoryLinesCount());
+    assertEquals("", textBuffer.getLine(-1).getText());
+
+    TerminalLine line2 = textBuffer.getLine(0);
+    textBuffer.scrollArea(2, -1, 5);
+    textBuffer.scrollArea(1, -1, 2);
+    assertEquals("      \n" +
+                 "      \n" +
+                 "      \n" +
+                 "Line 5\n" +
+                 "      \n", textBuffer.getScreenLines());
+    assertEquals("Line 2", textBuffer.getLine(-1).getText());
+    assertSame(line2, textBuffer.getLine(-1));
+  }
+
+  public void testCompressedHistory() {
+    TextStyle red = new TextStyle(TerminalColor.index(1), null);
+    LinesBuffer history = new LinesBuffer(3000, true, null);
+    for (int i = 0; i < 5000; i++) {
+      history.addNewLine(i % 2 == 0 ? red : TextStyle.EMPTY, CharBufferUtil.create("Line " + i));
+      if (i % 3 == 0) {
+        history.getLine(history.getLineCount() - 1).setWrapped(true);
+      }
+    }
+
+    assertEquals(3000, history.getLineCount());
+    for (int row = 0; row < 3000; row += 7) {
+      TerminalLine line = history.getLine(row);
+      int i = row + 2000;
+      assertEquals("Line " + i, line.getText());
+      assertEquals(i % 3 == 0, line.isWrapped());
+      assertEquals(i % 2 == 0 ? red : TextStyle.EMPTY, line.getStyleAt(0));
+    }
+
+    LinesBuffer text = createLinesBuffer();
+    history.moveBottomLinesTo(2900, text);
+    assertEquals(100, history.getLineCount());
+    assertEquals("Line 2099", history.getLine(99).getText());
+    assertEquals("Line 2100", text.getLine(0).getText());
+    assertEquals("Line 4999", text.getLine(2899).getText());
+    assertSame(red, text.getLine(0).getStyleAt(2));
+
+    text.moveTopLinesTo(2900, history);
+    history.writeString(0, 0, CharBufferUtil.create("X"), red);
+    assertEquals("Xine 2000", history.getLine(0).getText());
+    assertEquals("Line 4999", history.getLine(2999).getText());
+  }
+
+  public void testHyperlinksOfCompressedLinesAreKept() {
+    TextProcessing textProcessing = new TextProcessing(new TextStyle(TerminalColor.index(4), null),
+                                                       HyperlinkStyle.HighlightMode.ALWAYS, true);
+    textProcessing.addHyperlinkFilter(line -> {
+      int start = line.indexOf("http://");
+      return start >= 0 ? new LinkResult(new LinkResultItem(start, line.length(), new LinkInfo(() -> {}))) : null;
+    });
+    for (int maxLines : new int[]{10000, -1}) {
+      LinesBuffer history = new LinesBuffer(maxLines, true, textProcessing);
+      for (int i = 0; i < 20000; i++) {
+        history.addNewLine(TextStyle.EMPTY, CharBufferUtil.create(i % 2 == 0 ? "see http://x.org/" + i : "Line " + i));
+      }
+
+      assertTrue(textProcessing.processHyperlinks(history.getLine(0)));
+      assertFalse(textProcessing.processHyperlinks(history.getLine(1)));
+      for (int row = 0; row < history.getLineCount(); row += 256) { // evicts the first block from the cache
+        history.getLine(row);
+      }
+
+      TerminalLine link = history.getLine(0);
+      assertTrue(link.isHyperlinksProcessed());
+      assertFalse(link.getStyleAt(3) instanceof HyperlinkStyle);
+      assertTrue(link.getStyleAt(4) instanceof HyperlinkStyle);
+      assertTrue(history.getLine(1).isHyperlinksProcessed());
+      assertFalse(history.getLine(2).isHyperlinksProcessed());
+      assertEquals("see http://x.org/" + (maxLines > 0 ? 10000 : 0), link.getText());
+      history.dispose();
+    }
+  }
+
+  public void testUnlimitedHistoryInFile() {
+    LinesBuffer history = new LinesBuffer(-1, true, null);
+    for (int i = 0; i < 30000; i++) {
+      history.addNewLine(TextStyle.EMPTY, CharBufferUtil.create("Line " + i));
+    }
+
+    assertEquals(30000, history.getLineCount());
+    for (int row = 0; row < 30000; row += 97) {
+      assertEquals("Line " + row, history.getLine(row).getText());
+    }
+
+    LinesBuffer text = createLinesBuffer();
+    history.moveBottomLinesTo(20000, text);
+    assertEquals("Line 9999", history.getLine(9999).getText());
+    assertEquals("Line 10000", text.getLine(0).getText());
+
+    history.dispose();
+    assertEquals(0, history.getLineCount());
+  }
+
+  public void testMaxBytes() {
+    LinesBuffer history = new LinesBuffer(-1, null);
+    history.addNewLine(TextStyle.EMPTY, CharBufferUtil.create("short"));
+    long shortLineSize = history.getRetainedBytes();
+    assertTrue(shortLineSize > 0);
+
+    history.setMaxBytes(20 * shortLineSize);
+    for (int i = 0; i < 100; i++) {
+      history.addNewLine(TextStyle.EMPTY, CharBufferUtil.create("Line " + i));
+    }
+    assertTrue(history.getRetainedBytes() <= 20 * shortLineSize);
+    assertEquals("Line 99", history.getLine(history.getLineCount() - 1).getText());
+
+    StringBuilder longLine = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      longLine.append('x');
+    }
+    history.addNewLine(TextStyle.EMPTY, CharBufferUtil.create(longLine.toString()));
+    assertTrue(history.getLineCount() < 10);
+
+    history.clearAll();
+    assertEquals(0, history.getRetainedBytes());
+  }
+
+  public void testSharedMemoryBudget() {
+    HistoryMemoryBudget budget = new HistoryMemoryBudget(10000);
+    TerminalTextBuffer first = new TerminalTextBuffer(80, 2, new StyleState());
+    TerminalTextBuffer second = new TerminalTextBuffer(80, 2, new StyleState());
+    first.setHistoryMemoryBudget(budget);
+    second.setHistoryMemoryBudget(budget);
+
+    for (int i = 0; i < 1000; i++) {
+      first.writeString(0, 1, CharBufferUtil.create("First " + i));
+      first.scrollArea(1, -1, 2);
+    }
+    long firstBytes = first.getHistoryRetainedBytes();
+    assertTrue(firstBytes > 0);
+    assertTrue(budget.getUsedBytes() <= 10000);
+
+    for (int i = 0; i < 1000; i++) {
+      second.writeString(0, 1, CharBufferUtil.create("Second " + i));
+      second.scrollArea(1, -1, 2);
+    }
+    assertTrue(budget.getUsedBytes() <= 10000);
+    assertEquals(first.getHistoryRetainedBytes() + second.getHistoryRetainedBytes(), budget.getUsedBytes());
+    assertTrue("the largest history is trimmed first", first.getHistoryRetainedBytes() < firstBytes);
+    assertEquals("Second 999", second.getLine(-1).getText());
+
+    second.dispose();
+    assertEquals(first.getHistoryRetainedBytes(), budget.getUsedBytes());
+  }
+
 }
@@ -0,0 +1,125 @@
+package com.jediterm;
+
+import com.jediterm.terminal.ArrayTerminalDataStream;
+import com.jediterm.terminal.Terminal;
+import com.jediterm.terminal.emulator.JediEmulator;
+import com.jediterm.terminal.emulator.OscHandler;
+import com.jediterm.terminal.emulator.SystemCommandSequence;
+import com.jediterm.terminal.model.JediTerminal;
+import com.jediterm.terminal.model.StyleState;
+import com.jediterm.terminal.model.TerminalTextBuffer;
+import com.jediterm.util.BackBufferDisplay;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+
+/**
+ * @author traff
+ */
+public class OscHandlerTest extends TestCase {
+  private static final String OSC = "\033]";
+  private static final String ST = "\033\\";
+
+  private String myTitle;
+  private String myPath;
+  private TerminalTextBuffer myTerminalTextBuffer;
+  private JediTerminal myTerminal;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    StyleState state = new StyleState();
+    myTerminalTextBuffer = new TerminalTextBuffer(10, 1, state);
+    BackBufferDisplay display = new BackBufferDisplay(myTerminalTextBuffer) {
+      @Override
+      public void setWindowTitle(String name) {
+        myTitle = name;
+      }
+
+      @Override
+      public void setCurrentPath(String path) {
+        myPath = path;
+      }
+    };
+    myTerminal = new JediTerminal(display, myTerminalTextBuffer, state);
+  }
+
+  public void testTitleAndPath() throws IOException {
+    run(createEmulator(OSC + "0;bel title\007" + OSC + "7;/home" + ST + "ok"));
+
+    assertEquals("bel title", myTitle);
+    assertEquals("/home", myPath);
+    assertEquals("ok        \n", myTerminalTextBuffer.getScreenLines());
+  }
+
+  public void testTooLongCommandIsIgnored() throws IOException {
+    StringBuilder title = new StringBuilder();
+    for (int i = 0; i < SystemCommandSequence.MAX_LENGTH; i++) {
+      title.append('t');
+    }
+    run(createEmulator(OSC + "2;short" + ST + OSC + "2;" + title + ST + "ok"));
+
+    assertEquals("short", myTitle);
+    assertEquals("ok        \n", myTerminalTextBuffer.getScreenLines());
+  }
+
+  public void testRegisteredHandler() throws IOException {
+    StringBuilder payload = new StringBuilder();
+    for (int i = 0; i < 3 * SystemCommandSequence.MAX_LENGTH; i++) {
+      payload.append((char)('a' + i % 26));
+    }
+    JediEmulator emulator = createEmulator(OSC + "52;c;" + payload + ST + OSC + "2;title\007" + OSC + "52;;x\007ok");
+    RecordingOscHandler handler = new RecordingOscHandler();
+    emulator.registerOscHandler(52, handler);
+    run(emulator);
+
+    assertEquals("[c;" + payload + "][;x]", handler.myLog.toString());
+    assertEquals("title", myTitle);
+    assertEquals("ok        \n", myTerminalTextBuffer.getScreenLines());
+  }
+
+  public void testCancelledCommandIsDiscarded() throws IOException {
+    JediEmulator emulator = createEmulator(OSC + "2;title\007" + OSC + "2;trunc\030" + OSC + "52;c;x\032ok");
+    RecordingOscHandler handler = new RecordingOscHandler();
+    emulator.registerOscHandler(52, handler);
+    run(emulator);
+
+    assertEquals("title", myTitle);
+    assertEquals("[c;x!", handler.myLog.toString());
+    assertEquals("ok        \n", myTerminalTextBuffer.getScreenLines());
+  }
+
+  private JediEmulator createEmulator(String content) {
+    return new JediEmulator(new ArrayTerminalDataStream(content.toCharArray()), myTerminal);
+  }
+
+  private static void run(JediEmulator emulator) throws IOException {
+    while (emulator.hasNext()) {
+      emulator.next();
+    }
+  }
+
+  private static class RecordingOscHandler implements OscHandler {
+    private final StringBuilder myLog = new StringBuilder();
+
+    @Override
+    public void start(Terminal terminal) {
+      myLog.append('[');
+    }
+
+    @Override
+    public void put(char c) {
+      myLog.append(c);
+    }
+
+    @Override
+    public void end(Terminal terminal) {
+      myLog.append(']');
+    }
+
+    @Override
+    public void abort(Terminal terminal) {
+      myLog.append('!');
+    }
+  }
+}
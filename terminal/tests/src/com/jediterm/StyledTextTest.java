@@ -103,6 +103,35 @@ public class StyledTextTest extends TestCase {
     assertTrue(style.hasOption(TextStyle.Option.BOLD));
   }
 
+  public void testStylesAreInternedPerTerminal() throws IOException {
+    TerminalTextBuffer terminalTextBuffer = getBufferFor(12, 1, CSI + "32mab" + CSI + "0mcd" + CSI + "32mef");
+    TextStyle green = terminalTextBuffer.getStyleAt(0, 0);
+    assertSame(green, terminalTextBuffer.getStyleAt(5, 0));
+    assertNotSame(green, getBufferFor(12, 1, CSI + "32mab").getStyleAt(0, 0));
+
+    StyleState state = new StyleState();
+    state.setCurrent(new TextStyle(TerminalColor.index(2), null));
+    TextStyle current = state.getCurrent();
+    state.reset();
+    state.setCurrent(new TextStyle(TerminalColor.index(2), null));
+    assertSame(current, state.getCurrent());
+    assertEquals(1, state.getStyleRegistry().size());
+  }
+
+  public void testManyStylesAreInterned() {
+    StyleState state = new StyleState();
+    java.util.List<TextStyle> styles = new java.util.ArrayList<TextStyle>();
+    for (int i = 0; i < 100; i++) {
+      state.setCurrent(new TextStyle(TerminalColor.index(i), null));
+      styles.add(state.getCurrent());
+    }
+    for (int i = 0; i < 100; i++) {
+      state.setCurrent(new TextStyle(TerminalColor.index(i), null));
+      assertSame(styles.get(i), state.getCurrent());
+    }
+    assertEquals(100, state.getStyleRegistry().size());
+  }
+
   private TerminalTextBuffer getBufferFor(int width, int height, String content) throws IOException {
     StyleState state = new StyleState();
     TerminalTextBuffer terminalTextBuffer = new TerminalTextBuffer(width, height, state);
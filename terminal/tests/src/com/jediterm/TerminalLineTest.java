@@ -0,0 +1,111 @@
+package com.jediterm;
+
+import com.jediterm.terminal.StyledTextConsumerAdapter;
+import com.jediterm.terminal.TerminalColor;
+import com.jediterm.terminal.TextStyle;
+import com.jediterm.terminal.model.CharBuffer;
+import com.jediterm.terminal.model.TerminalLine;
+import junit.framework.TestCase;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * @author traff
+ */
+public class TerminalLineTest extends TestCase {
+  private static final TextStyle RED = new TextStyle(TerminalColor.index(1), null);
+  private static final TextStyle GREEN = new TextStyle(TerminalColor.index(2), null);
+
+  public void testOverwriteInTheMiddle() {
+    TerminalLine line = new TerminalLine();
+    line.writeString(0, new CharBuffer("[....]"), RED);
+    line.writeString(2, new CharBuffer("##"), GREEN);
+    line.writeString(3, new CharBuffer("#"), RED);
+
+    assertEquals("[.##.]", line.getText());
+    assertEquals("RED:[. GREEN:# RED:#.] queue:6/6", process(line));
+    assertSame(GREEN, line.getStyleAt(2));
+    assertNull(line.getStyleAt(6));
+    assertEquals('#', line.charAt(3));
+    assertEquals(' ', line.charAt(10));
+  }
+
+  public void testTextIsCachedUntilModification() {
+    TerminalLine line = new TerminalLine();
+    line.writeString(0, new CharBuffer("abc"), RED);
+    String text = line.getText();
+    assertSame(text, line.getText());
+    assertEquals(3, line.getTextLength());
+
+    line.writeString(1, new CharBuffer("#"), GREEN);
+    assertEquals("a#c", line.getText());
+    assertEquals('#', line.charAt(1));
+    assertEquals(' ', line.charAt(-1));
+  }
+
+  public void testNulOnlyAtTheEnd() {
+    TerminalLine line = new TerminalLine();
+    line.writeString(2, new CharBuffer("ab"), RED);
+    assertEquals("  ab", line.getText());
+
+    line.clearArea(3, -1, GREEN);
+    assertEquals("  a", line.getText());
+    assertEquals("EMPTY:   RED:a nul(3):GREEN queue:4/3", process(line));
+
+    line.clearArea(0, 1, GREEN);
+    assertEquals("  a", line.getText());
+    assertFalse(line.isNul());
+
+    line.clearArea(0, -1, RED);
+    assertTrue(line.isNul());
+    assertEquals("", line.getText());
+  }
+
+  public void testInsertAndDelete() {
+    TerminalLine line = new TerminalLine();
+    line.writeString(0, new CharBuffer("abcdef"), RED);
+
+    line.insertBlankCharacters(2, 2, 7, GREEN);
+    assertEquals("ab  cde", line.getText());
+    assertSame(GREEN, line.getStyleAt(3));
+
+    line.deleteCharacters(1, 3, GREEN);
+    assertEquals("acde", line.getText());
+    assertEquals("RED:acde nul(4):GREEN queue:7/4", process(line));
+  }
+
+  public void testManyStyles() {
+    TerminalLine line = new TerminalLine();
+    for (int i = 0; i < 1000; i++) {
+      line.writeString(i % 10, new CharBuffer("x"), new TextStyle(TerminalColor.index(i % 256), null));
+    }
+    assertEquals("xxxxxxxxxx", line.getText());
+    for (int i = 0; i < 10; i++) {
+      assertEquals(TerminalColor.index(990 % 256 + i), line.getStyleAt(i).getForeground());
+    }
+  }
+
+  private static String process(TerminalLine line) {
+    final StringBuilder sb = new StringBuilder();
+    line.process(0, new StyledTextConsumerAdapter() {
+      @Override
+      public void consume(int x, int y, @NotNull TextStyle style, @NotNull CharBuffer characters, int startRow) {
+        sb.append(name(style)).append(':').append(characters).append(' ');
+      }
+
+      @Override
+      public void consumeNul(int x, int y, int nulIndex, @NotNull TextStyle style, @NotNull CharBuffer characters, int startRow) {
+        sb.append("nul(").append(nulIndex).append("):").append(name(style)).append(' ');
+      }
+
+      @Override
+      public void consumeQueue(int x, int y, int nulIndex, int startRow) {
+        sb.append("queue:").append(x).append('/').append(nulIndex);
+      }
+    }, 0);
+    return sb.toString();
+  }
+
+  private static String name(TextStyle style) {
+    return style == RED ? "RED" : style == GREEN ? "GREEN" : style == TextStyle.EMPTY ? "EMPTY" : style.toString();
+  }
+}
@@ -1,9 +1,15 @@
 package com.jediterm;
 
+import com.jediterm.terminal.ArrayTerminalDataStream;
+import com.jediterm.terminal.HyperlinkStyle;
 import com.jediterm.terminal.StyledTextConsumer;
 import com.jediterm.terminal.StyledTextConsumerAdapter;
+import com.jediterm.terminal.SubstringFinder;
+import com.jediterm.terminal.TerminalColor;
 import com.jediterm.terminal.TextStyle;
+import com.jediterm.terminal.emulator.JediEmulator;
 import com.jediterm.terminal.model.*;
+import com.jediterm.terminal.model.hyperlinks.*;
 import com.jediterm.util.BackBufferDisplay;
 import junit.framework.TestCase;
 import org.jetbrains.annotations.NotNull;
@@ -387,4 +393,395 @@ public class TerminalTextBufferTest extends TestCase {
     assertEquals("生\uE000活\uE000習\uE000慣\uE000病\uE000\n" +
             "          \n", terminalTextBuffer.getScreenLines());
   }
+
+  public void testWriteCharactersFromBuffer() {
+    StyleState state = new StyleState();
+
+    TerminalTextBuffer terminalTextBuffer = new TerminalTextBuffer(10, 2, state);
+
+    JediTerminal terminal = new JediTerminal(new BackBufferDisplay(terminalTextBuffer), terminalTextBuffer, state);
+
+    char[] buf = "--abc--".toCharArray();
+    terminal.writeCharacters(buf, 2, 3);
+
+    terminal.designateCharacterSet(0, '0');
+    buf = "xxqxx".toCharArray();
+    terminal.writeCharacters(buf, 2, 1);
+    terminal.designateCharacterSet(0, 'B');
+
+    buf = "-生活-".toCharArray();
+    terminal.writeCharacters(buf, 1, 2);
+
+    buf[1] = 'z';
+
+    assertEquals("abc\u2500生\uE000活\uE000  \n" +
+            "          \n", terminalTextBuffer.getScreenLines());
+  }
+
+  public void testClearedLinesShareBlankCells() {
+    StyleState state = new StyleState();
+
+    TerminalTextBuffer terminalTextBuffer = new TerminalTextBuffer(5, 3, state);
+
+    JediTerminal terminal = new JediTerminal(new BackBufferDisplay(terminalTextBuffer), terminalTextBuffer, state);
+
+    terminal.clearScreen();
+    terminal.cursorPosition(2, 2);
+    terminal.writeString("ab");
+    terminal.clearScreen();
+    terminal.cursorPosition(1, 3);
+    terminal.writeString("c");
+
+    assertEquals("     \n" +
+            "     \n" +
+            "c    \n", terminalTextBuffer.getScreenLines());
+    assertTrue(terminalTextBuffer.getLine(1).isNul());
+    assertEquals("\0\0\0\0\0", CharBuffer.nuls(5).toString());
+  }
+
+  public void testSnapshotIsNotChangedByEmulator() {
+    StyleState state = new StyleState();
+
+    TerminalTextBuffer terminalTextBuffer = new TerminalTextBuffer(5, 2, state);
+
+    JediTerminal terminal = new JediTerminal(new BackBufferDisplay(terminalTextBuffer), terminalTextBuffer, state);
+
+    terminal.writeString("abc");
+    terminal.newLine();
+    terminal.carriageReturn();
+    terminal.writeString("def");
+    TextBufferSnapshot first = terminalTextBuffer.createSnapshot(0, 2, null);
+
+    terminal.newLine();
+    terminal.carriageReturn();
+    terminal.writeString("ghi");
+    TextBufferSnapshot second = terminalTextBuffer.createSnapshot(0, 2, first);
+    TextBufferSnapshot scrolled = terminalTextBuffer.createSnapshot(-1, 2, second);
+
+    assertEquals("0:abc 1:def ", snapshotText(first));
+    assertEquals("0:def 1:ghi ", snapshotText(second));
+    assertEquals("0:abc 1:def ", snapshotText(scrolled));
+  }
+
+  public void testDamageContainsChangedRowsAndScroll() {
+    StyleState state = new StyleState();
+    TerminalTextBuffer terminalTextBuffer = new TerminalTextBuffer(10, 3, state);
+    JediTerminal terminal = new JediTerminal(new BackBufferDisplay(terminalTextBuffer), terminalTextBuffer, state);
+    final java.util.List<TerminalDamage> damages = new java.util.ArrayList<>();
+    terminalTextBuffer.addModelListener(new TerminalModelListener() {
+      @Override
+      public void modelChanged() {
+        fail("Damage should be delivered instead");
+      }
+
+      @Override
+      public void modelChanged(@NotNull TerminalDamage damage) {
+        damages.add(damage);
+      }
+    });
+
+    terminal.newLine();
+    terminal.writeString("abc");
+    assertEquals(1, damages.size());
+    assertEquals(1, damages.get(0).getFirstDirtyRow());
+    assertEquals(1, damages.get(0).getLastDirtyRow());
+    assertEquals(0, damages.get(0).getScrollDelta());
+
+    damages.clear();
+    terminal.newLine();
+    terminal.newLine();
+    assertEquals(1, damages.size());
+    TerminalDamage scroll = damages.get(0);
+    assertEquals(1, scroll.getScrollDelta());
+    assertTrue(scroll.isHistoryChanged());
+    assertEquals(2, scroll.getFirstDirtyRow());
+    assertEquals(2, scroll.getLastDirtyRow());
+    assertFalse(scroll.isFullRepaint());
+
+    damages.clear();
+    terminalTextBuffer.useAlternateBuffer(true);
+    assertTrue(damages.get(0).isFullRepaint());
+  }
+
+  public void testOneEventPerChunk() throws Exception {
+    StyleState state = new StyleState();
+    TerminalTextBuffer terminalTextBuffer = new TerminalTextBuffer(10, 3, state);
+    JediTerminal terminal = new JediTerminal(new BackBufferDisplay(terminalTextBuffer), terminalTextBuffer, state);
+    final java.util.List<TerminalDamage> damages = new java.util.ArrayList<>();
+    terminalTextBuffer.addModelListener(new TerminalModelListener() {
+      @Override
+      public void modelChanged() {
+      }
+
+      @Override
+      public void modelChanged(@NotNull TerminalDamage damage) {
+        damages.add(damage);
+      }
+    });
+
+    JediEmulator emulator = new JediEmulator(new ArrayTerminalDataStream("abc\r\nd\033[1;5He\033[3;1Hf".toCharArray()), terminal);
+    emulator.next();
+
+    assertEquals(1, damages.size());
+    assertEquals(0, damages.get(0).getFirstDirtyRow());
+    assertEquals(2, damages.get(0).getLastDirtyRow());
+    assertEquals("abc e     \nd         \nf         \n", terminalTextBuffer.getScreenLines());
+  }
+
+  public void testHyperlinksAreFoundInBackground() throws Exception {
+    StyleState state = new StyleState();
+    TerminalTextBuffer terminalTextBuffer = new TerminalTextBuffer(30, 3, state, createUrlProcessing(false));
+    JediTerminal terminal = new JediTerminal(new BackBufferDisplay(terminalTextBuffer), terminalTextBuffer, state);
+    java.util.concurrent.CountDownLatch processed = hyperlinksProcessed(terminalTextBuffer);
+
+    terminal.writeString("see ");
+    terminal.writeString("http://x.org");
+
+    assertTrue(processed.await(5, java.util.concurrent.TimeUnit.SECONDS));
+    assertFalse(terminalTextBuffer.getStyleAt(0, 0) instanceof HyperlinkStyle);
+    assertTrue(terminalTextBuffer.getStyleAt(4, 0) instanceof HyperlinkStyle);
+    assertEquals("see http://x.org", terminalTextBuffer.getLine(0).getText());
+  }
+
+  public void testLazyHyperlinksAreFoundForRequestedLines() throws Exception {
+    StyleState state = new StyleState();
+    TerminalTextBuffer terminalTextBuffer = new TerminalTextBuffer(30, 3, state, createUrlProcessing(true));
+    JediTerminal terminal = new JediTerminal(new BackBufferDisplay(terminalTextBuffer), terminalTextBuffer, state);
+    java.util.concurrent.CountDownLatch processed = hyperlinksProcessed(terminalTextBuffer);
+
+    terminal.writeString("http://x.org");
+    terminal.newLine();
+    terminal.carriageReturn();
+    terminal.writeString("http://y.org");
+    terminalTextBuffer.requestHyperlinks(1, 1);
+
+    assertTrue(processed.await(5, java.util.concurrent.TimeUnit.SECONDS));
+    assertFalse(terminalTextBuffer.getStyleAt(0, 0) instanceof HyperlinkStyle);
+    assertTrue(terminalTextBuffer.getStyleAt(0, 1) instanceof HyperlinkStyle);
+  }
+
+  public void testAnchoredFilterIsCalledOnlyNearAnchors() {
+    TextProcessing textProcessing = new TextProcessing(new TextStyle(TerminalColor.index(4), null), HyperlinkStyle.HighlightMode.ALWAYS);
+    final java.util.List<String> calls = new java.util.ArrayList<>();
+    textProcessing.addHyperlinkFilter(new AnchoredHyperlinkFilter() {
+      @NotNull
+      @Override
+      public java.util.List<String> getAnchors() {
+        return java.util.Arrays.asList("JIRA-", "IRA-1");
+      }
+
+      @Override
+      public LinkResult apply(String line) {
+        throw new AssertionError("Should be called with anchors");
+      }
+
+      @Override
+      public LinkResult apply(@NotNull String line, @NotNull int[] anchorOffsets) {
+        calls.add(java.util.Arrays.toString(anchorOffsets));
+        return new LinkResult(new LinkResultItem(anchorOffsets[0], anchorOffsets[0] + 6, new LinkInfo(() -> {})));
+      }
+    });
+
+    TerminalLine plain = new TerminalLine();
+    plain.writeString(0, new CharBuffer("no tickets here"), TextStyle.EMPTY);
+    assertFalse(textProcessing.processHyperlinks(plain));
+
+    TerminalLine line = new TerminalLine();
+    line.writeString(0, new CharBuffer("fix JIRA-12, JIRA-7"), TextStyle.EMPTY);
+    assertTrue(textProcessing.processHyperlinks(line));
+    assertEquals("[[4, 5, 13]]", calls.toString());
+    assertTrue(line.getStyleAt(4) instanceof HyperlinkStyle);
+    assertFalse(line.getStyleAt(3) instanceof HyperlinkStyle);
+  }
+
+  public void testLineModifiedWhileProcessingIsProcessedAgain() throws Exception {
+    TextProcessing textProcessing = new TextProcessing(new TextStyle(TerminalColor.index(4), null), HyperlinkStyle.HighlightMode.ALWAYS);
+    final TerminalLine line = new TerminalLine();
+    line.writeString(0, new CharBuffer("xx http://x.org"), TextStyle.EMPTY);
+    final java.util.concurrent.atomic.AtomicInteger calls = new java.util.concurrent.atomic.AtomicInteger();
+    textProcessing.addHyperlinkFilter(text -> {
+      if (calls.getAndIncrement() == 0) {
+        line.deleteCharacters(0, 3, TextStyle.EMPTY);
+      }
+      int start = text.indexOf("http://");
+      return start >= 0 ? new LinkResult(new LinkResultItem(start, text.length(), new LinkInfo(() -> {}))) : null;
+    });
+    final java.util.concurrent.CountDownLatch processed = new java.util.concurrent.CountDownLatch(1);
+    textProcessing.addHyperlinksListener(processed::countDown);
+
+    assertFalse(textProcessing.processHyperlinks(line));
+    assertFalse(line.getStyleAt(0) instanceof HyperlinkStyle);
+
+    assertTrue(processed.await(5, java.util.concurrent.TimeUnit.SECONDS));
+    assertEquals(2, calls.get());
+    assertTrue(line.getStyleAt(0) instanceof HyperlinkStyle);
+    assertTrue(line.getStyleAt(11) instanceof HyperlinkStyle);
+  }
+
+  public void testFoundRangesAreLookedUpByRow() {
+    StyleState state = new StyleState();
+    TerminalTextBuffer terminalTextBuffer = new TerminalTextBuffer(10, 2, state);
+    JediTerminal terminal = new JediTerminal(new BackBufferDisplay(terminalTextBuffer), terminalTextBuffer, state);
+    terminal.writeString("foo");
+    terminal.newLine();
+    terminal.carriageReturn();
+    terminal.writeString("a ");
+    terminal.writeString("foo");
+    terminal.newLine();
+    terminal.carriageReturn();
+    assertEquals(1, terminalTextBuffer.getHistoryLinesCount());
+
+    SubstringFinder.FindResult result = terminal.searchInTerminalTextBuffer("foo", false);
+    assertEquals(2, result.getItems().size());
+    assertEquals("[<0,3>]", result.getRanges(0).toString());
+    assertEquals("[<2,5>]", result.getRanges(1).toString());
+    assertNull(result.getRanges(2));
+  }
+
+  public void testSearchFindsMatchesInHistoryAndWrappedLines() throws Exception {
+    StyleState state = new StyleState();
+    TerminalTextBuffer terminalTextBuffer = new TerminalTextBuffer(10, 3, state);
+    JediTerminal terminal = new JediTerminal(new BackBufferDisplay(terminalTextBuffer), terminalTextBuffer, state);
+    terminal.writeString("foo bar");
+    terminal.newLine();
+    terminal.carriageReturn();
+    terminal.writeString("123456789f");
+    terminal.writeString("oobar");
+    terminal.newLine();
+    terminal.carriageReturn();
+    terminal.writeString("fofoo");
+    assertEquals(1, terminalTextBuffer.getHistoryLinesCount());
+
+    TextBufferSearch search = new TextBufferSearch(terminalTextBuffer);
+    assertEquals("[0:0-0:2 foo, 1:9-2:1 foo, 3:2-3:4 foo]", searchResult(search, "foo"));
+    assertEquals("[1:9-2:2 foob]", searchResult(search, "FOOB"));
+    assertEquals("[0:0-0:2 foo, 1:9-2:1 foo, 3:2-3:4 foo]", searchResult(search, "Foo"));
+    search.dispose();
+  }
+
+  public void testSearchKeepsRowsWhenHistoryIsTruncatedMeanwhile() throws Exception {
+    StyleState state = new StyleState();
+    TerminalTextBuffer terminalTextBuffer = new TerminalTextBuffer(10, 3, state, 5, null);
+    JediTerminal terminal = new JediTerminal(new BackBufferDisplay(terminalTextBuffer), terminalTextBuffer, state);
+    terminal.writeString("a0");
+    for (int i = 1; i < 8; i++) {
+      terminal.newLine();
+      terminal.carriageReturn();
+      terminal.writeString("a" + i);
+    }
+    assertEquals(5, terminalTextBuffer.getHistoryLinesCount());
+
+    TextBufferSearch search = new TextBufferSearch(terminalTextBuffer);
+    final java.util.concurrent.CountDownLatch complete = new java.util.concurrent.CountDownLatch(1);
+    final java.util.List<String> items = new java.util.ArrayList<>();
+    search.search("a", false, 0, 3, new TextBufferSearch.ResultListener() {
+      private boolean myWritten = false;
+
+      @Override
+      public void resultUpdated(@NotNull SubstringFinder.FindResult result, boolean isComplete) {
+        if (!myWritten) { // output after the visible rows are searched drops two history lines
+          myWritten = true;
+          for (int i = 0; i < 2; i++) {
+            terminal.newLine();
+            terminal.carriageReturn();
+            terminal.writeString("b" + i);
+          }
+        }
+        if (isComplete) {
+          int historyCount = terminalTextBuffer.getHistoryLinesCount();
+          for (SubstringFinder.FindResult.FindItem item : result.getItems()) {
+            int y = item.getStart().y;
+            items.add(y + ":" + terminalTextBuffer.getLine(y - historyCount).getText());
+          }
+          complete.countDown();
+        }
+      }
+    });
+    assertTrue(complete.await(5, java.util.concurrent.TimeUnit.SECONDS));
+    assertEquals("[0:a2, 1:a3, 2:a4, 3:a5, 4:a6, 5:a7]", items.toString());
+    search.dispose();
+  }
+
+  public void testSearchesOfTerminalsDontWaitForEachOther() throws Exception {
+    StyleState state = new StyleState();
+    TerminalTextBuffer busyBuffer = new TerminalTextBuffer(10, 3, state);
+    TerminalTextBuffer terminalTextBuffer = new TerminalTextBuffer(10, 3, state);
+    new JediTerminal(new BackBufferDisplay(terminalTextBuffer), terminalTextBuffer, state).writeString("foo");
+
+    TextBufferSearch busySearch = new TextBufferSearch(busyBuffer);
+    final java.util.concurrent.CountDownLatch release = new java.util.concurrent.CountDownLatch(1);
+    busySearch.search("foo", false, 0, 3, (result, isComplete) -> {
+      try {
+        release.await(); // blocks the search thread of the busy terminal
+      }
+      catch (InterruptedException ignored) {
+      }
+    });
+
+    TextBufferSearch search = new TextBufferSearch(terminalTextBuffer);
+    try {
+      assertEquals("[0:0-0:2 foo]", searchResult(search, "foo"));
+    }
+    finally {
+      release.countDown();
+      busySearch.dispose();
+      search.dispose();
+    }
+  }
+
+  @NotNull
+  private static TextProcessing createUrlProcessing(boolean lazy) {
+    TextProcessing textProcessing = new TextProcessing(new TextStyle(TerminalColor.index(4), null), HyperlinkStyle.HighlightMode.ALWAYS, lazy);
+    textProcessing.addHyperlinkFilter(line -> {
+      int start = line.indexOf("http://");
+      return start >= 0 ? new LinkResult(new LinkResultItem(start, line.length(), new LinkInfo(() -> {}))) : null;
+    });
+    return textProcessing;
+  }
+
+  @NotNull
+  private static java.util.concurrent.CountDownLatch hyperlinksProcessed(@NotNull TerminalTextBuffer terminalTextBuffer) {
+    final java.util.concurrent.CountDownLatch processed = new java.util.concurrent.CountDownLatch(1);
+    terminalTextBuffer.addModelListener(new TerminalModelListener() {
+      @Override
+      public void modelChanged() {
+      }
+
+      @Override
+      public void modelChanged(@NotNull TerminalDamage damage) {
+        if (damage.isFullRepaint()) {
+          processed.countDown();
+        }
+      }
+    });
+    return processed;
+  }
+
+  @NotNull
+  private static String searchResult(@NotNull TextBufferSearch search, @NotNull String pattern) throws Exception {
+    final java.util.concurrent.CountDownLatch complete = new java.util.concurrent.CountDownLatch(1);
+    final java.util.List<String> items = new java.util.ArrayList<>();
+    search.search(pattern, true, 0, 3, (result, isComplete) -> {
+      if (isComplete) {
+        for (SubstringFinder.FindResult.FindItem item : result.getItems()) {
+          items.add(item.getStart().y + ":" + item.getStart().x + "-" + item.getEnd().y + ":" + item.getEnd().x + " " + item);
+        }
+        complete.countDown();
+      }
+    });
+    assertTrue(complete.await(5, java.util.concurrent.TimeUnit.SECONDS));
+    return items.toString();
+  }
+
+  @NotNull
+  private static String snapshotText(@NotNull TextBufferSnapshot snapshot) {
+    final StringBuilder sb = new StringBuilder();
+    snapshot.processLines(new StyledTextConsumerAdapter() {
+      @Override
+      public void consume(int x, int y, @NotNull TextStyle style, @NotNull CharBuffer characters, int startRow) {
+        sb.append(y - startRow).append(':').append(characters).append(' ');
+      }
+    });
+    return sb.toString();
+  }
 }
@@ -0,0 +1,44 @@
+package com.jediterm;
+
+import com.jediterm.terminal.TerminalColor;
+import com.jediterm.terminal.TextStyle;
+import junit.framework.TestCase;
+
+import java.util.EnumSet;
+
+/**
+ * @author traff
+ */
+public class TextStyleTest extends TestCase {
+  public void testEquality() {
+    TextStyle style = new TextStyle(TerminalColor.rgb(1, 128, 255), TerminalColor.index(12),
+                                    EnumSet.of(TextStyle.Option.BOLD, TextStyle.Option.HIDDEN));
+    TextStyle same = new TextStyle(TerminalColor.rgb(1, 128, 255), TerminalColor.index(12),
+                                   EnumSet.of(TextStyle.Option.HIDDEN, TextStyle.Option.BOLD));
+
+    assertEquals(style, same);
+    assertEquals(style.hashCode(), same.hashCode());
+    assertEquals(style, style.readonlyCopy());
+    assertFalse(style.equals(new TextStyle(TerminalColor.rgb(1, 128, 255), TerminalColor.index(12))));
+    assertFalse(style.equals(new TextStyle(TerminalColor.index(12), TerminalColor.rgb(1, 128, 255),
+                                           EnumSet.of(TextStyle.Option.BOLD, TextStyle.Option.HIDDEN))));
+    assertFalse(TerminalColor.index(1).equals(TerminalColor.rgb(0, 0, 1)));
+  }
+
+  public void testDefaultColorsAndInverse() {
+    TextStyle style = new TextStyle(null, TerminalColor.BLACK, EnumSet.of(TextStyle.Option.INVERSE));
+
+    assertNull(style.getBackgroundForRun());
+    assertEquals(TerminalColor.BLACK, style.getForegroundForRun());
+  }
+
+  public void testOptionsAreValueSemantics() {
+    TextStyle style = new TextStyle();
+    style.setOption(TextStyle.Option.UNDERLINED, true);
+    assertTrue(style.hasOption(TextStyle.Option.UNDERLINED));
+    assertFalse(TextStyle.EMPTY.hasOption(TextStyle.Option.UNDERLINED));
+    assertEquals(style.hashCode(), style.readonlyCopy().hashCode());
+    style.clearOptions();
+    assertEquals(TextStyle.EMPTY, style);
+  }
+}
@@ -0,0 +1,203 @@
+package com.jediterm;
+
+import com.jediterm.terminal.Questioner;
+import com.jediterm.terminal.TerminalDataStream;
+import com.jediterm.terminal.TtyBasedArrayDataStream;
+import com.jediterm.terminal.TtyConnector;
+import com.jediterm.terminal.TtyReaderDataStream;
+import junit.framework.TestCase;
+
+import java.awt.*;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @author traff
+ */
+public class TtyBasedArrayDataStreamTest extends TestCase {
+  public void testAscii() throws IOException {
+    doTest("Hello, world!", "Hello, world!".getBytes(StandardCharsets.UTF_8));
+  }
+
+  public void testMultiByte() throws IOException {
+    String text = "héllo € 𝄞 Привет";
+    doTest(text, text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  public void testSequencesSplitAcrossReads() throws IOException {
+    String text = "é€𝄞x中文";
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    for (int chunk = 1; chunk <= 4; chunk++) {
+      assertEquals(text, readAll(new ByteTtyConnector(bytes, chunk)));
+    }
+  }
+
+  public void testMalformed() throws IOException {
+    doTest("a�b��c", new byte[]{'a', (byte)0xFF, 'b', (byte)0xC0, (byte)0x80, 'c'});
+  }
+
+  public void testTruncatedSequence() throws IOException {
+    doTest("�a", new byte[]{(byte)0xE2, 'a'});
+  }
+
+  public void testTruncatedSequenceAtEof() throws IOException {
+    doTest("a\uFFFD", new byte[]{'a', (byte)0xE2, (byte)0x82});
+  }
+
+  public void testCharConnector() throws IOException {
+    String text = "é€𝄞x中文𝄞𝄞";
+    for (int chunk = 1; chunk <= 4; chunk++) {
+      assertEquals(text, readAll(new CharTtyConnector(text, chunk)));
+    }
+  }
+
+  public void testReaderThread() throws IOException {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 5000; i++) {
+      sb.append("line ").append(i).append(" é€𝄞\r\n");
+    }
+    String text = sb.toString();
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    for (int chunk : new int[]{1, 7, 4096}) {
+      assertEquals(text, readAll(new TtyReaderDataStream(new ByteTtyConnector(bytes, chunk), 2)));
+    }
+  }
+
+  public void testCloseStopsReaderThread() throws Exception {
+    TtyReaderDataStream stream = new TtyReaderDataStream(new ByteTtyConnector(new byte[100000], 10), 2);
+    stream.getChar();
+    Thread reader = null;
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (thread.getName().equals("TtyReader-Test")) {
+        reader = thread;
+      }
+    }
+    assertNotNull(reader);
+
+    stream.close();
+    reader.join(5000);
+    assertFalse(reader.isAlive());
+    readAll(stream); // ends with EOF instead of waiting for more data
+  }
+
+  private static void doTest(String expected, byte[] bytes) throws IOException {
+    assertEquals(expected, readAll(new ByteTtyConnector(bytes, bytes.length)));
+  }
+
+  private static String readAll(TtyConnector connector) throws IOException {
+    return readAll(new TtyBasedArrayDataStream(connector));
+  }
+
+  private static String readAll(TtyBasedArrayDataStream stream) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    try {
+      while (true) {
+        sb.append(stream.getChar());
+      }
+    }
+    catch (TerminalDataStream.EOF ignored) {
+    }
+    return sb.toString();
+  }
+
+  private static class ByteTtyConnector extends TestTtyConnector {
+    private final byte[] myBytes;
+    private final int myChunkSize;
+    private int myOffset = 0;
+
+    private ByteTtyConnector(byte[] bytes, int chunkSize) {
+      myBytes = bytes;
+      myChunkSize = chunkSize;
+    }
+
+    @Override
+    public int read(byte[] buf, int offset, int length) {
+      if (myOffset == myBytes.length) {
+        return -1;
+      }
+      int len = Math.min(Math.min(length, myChunkSize), myBytes.length - myOffset);
+      System.arraycopy(myBytes, myOffset, buf, offset, len);
+      myOffset += len;
+      return len;
+    }
+
+    @Override
+    public int read(char[] buf, int offset, int length) {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /**
+   * Connector without a charset, that supports only char reads
+   */
+  private static class CharTtyConnector extends TestTtyConnector {
+    private final String myText;
+    private final int myChunkSize;
+    private int myOffset = 0;
+
+    private CharTtyConnector(String text, int chunkSize) {
+      myText = text;
+      myChunkSize = chunkSize;
+    }
+
+    @Override
+    public int read(char[] buf, int offset, int length) {
+      if (myOffset == myText.length()) {
+        return -1;
+      }
+      int len = Math.min(Math.min(length, myChunkSize), myText.length() - myOffset);
+      myText.getChars(myOffset, myOffset + len, buf, offset);
+      myOffset += len;
+      return len;
+    }
+
+    @Override
+    public Charset getCharset() {
+      return null;
+    }
+  }
+
+  private static abstract class TestTtyConnector implements TtyConnector {
+    @Override
+    public Charset getCharset() {
+      return StandardCharsets.UTF_8;
+    }
+
+    @Override
+    public boolean init(Questioner q) {
+      return true;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void resize(Dimension termSize, Dimension pixelSize) {
+    }
+
+    @Override
+    public String getName() {
+      return "Test";
+    }
+
+    @Override
+    public void write(byte[] bytes) {
+    }
+
+    @Override
+    public boolean isConnected() {
+      return true;
+    }
+
+    @Override
+    public void write(String string) {
+    }
+
+    @Override
+    public int waitFor() {
+      return 0;
+    }
+  }
+}
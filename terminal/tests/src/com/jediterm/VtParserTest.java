@@ -0,0 +1,185 @@
+package com.jediterm;
+
+import com.jediterm.terminal.emulator.ColorPalette;
+import com.jediterm.terminal.emulator.JediEmulator;
+import com.jediterm.terminal.emulator.VtParser;
+import com.jediterm.terminal.model.JediTerminal;
+import com.jediterm.terminal.model.StyleState;
+import com.jediterm.terminal.model.TerminalTextBuffer;
+import com.jediterm.util.BackBufferDisplay;
+import com.jediterm.util.ChunkedDataStream;
+import junit.framework.TestCase;
+
+import java.io.IOException;
+
+/**
+ * @author traff
+ */
+public class VtParserTest extends TestCase {
+  public void testPrintAndExecute() throws IOException {
+    doTest("ab\r\n", "print(a) print(b) execute(13) execute(10) ");
+  }
+
+  public void testCsi() throws IOException {
+    doTest("\033[1;22H\033[?25l\033[m", "csi(1;22 H) csi(?25 l) csi( m) ");
+  }
+
+  public void testEmptyParams() throws IOException {
+    doTest("\033[;5H\033[3;m", "csi(-1;5 H) csi(3;-1 m) ");
+  }
+
+  public void testControlCharInsideCsi() throws IOException {
+    doTest("\033[1\r2A", "execute(13) csi(12 A) ");
+  }
+
+  public void testIntermediates() throws IOException {
+    doTest("\033(B\033[!p\033[2 q", "esc(( B) csi( !p) csi(2  q) ");
+  }
+
+  public void testCancel() throws IOException {
+    doTest("\033[12\030x", "execute(24) print(x) ");
+  }
+
+  public void testOsc() throws IOException {
+    doTest("\033]0;title\007\033]2;other\033\\x", "osc(0;title) osc(2;other) esc(\\) print(x) ");
+  }
+
+  public void testOscCancel() throws IOException {
+    doTest("\033]0;ti\030x\033]2;t\032y", "oscAbort execute(24) print(x) oscAbort execute(26) print(y) ");
+  }
+
+  public void testSplitAcrossChunks() throws IOException {
+    String text = "a\033[38;5;100mb\033]0;title\007c";
+    for (int split = 1; split < text.length(); split++) {
+      final String[] title = new String[1];
+      StyleState state = new StyleState();
+      TerminalTextBuffer buffer = new TerminalTextBuffer(5, 1, state);
+      JediTerminal terminal = new JediTerminal(new BackBufferDisplay(buffer) {
+        @Override
+        public void setWindowTitle(String name) {
+          title[0] = name;
+        }
+      }, buffer, state);
+      JediEmulator emulator = new JediEmulator(new ChunkedDataStream(text.substring(0, split), text.substring(split)),
+                                               terminal);
+      while (emulator.hasNext()) {
+        emulator.next();
+      }
+
+      String message = "split at " + split;
+      assertEquals(message, "abc  \n", buffer.getScreenLines());
+      assertEquals(message, "title", title[0]);
+      assertNull(message, buffer.getStyleAt(0, 0).getForeground());
+      assertEquals(message, ColorPalette.getIndexedColor(100), buffer.getStyleAt(1, 0).getForeground());
+      assertEquals(message, ColorPalette.getIndexedColor(100), buffer.getStyleAt(2, 0).getForeground());
+    }
+  }
+
+  public void testRawSequenceRecording() throws IOException {
+    final StringBuilder raw = new StringBuilder();
+    VtParser parser = new VtParser(new RecordingHandler() {
+      @Override
+      public void csiDispatch(VtParser parser, char finalChar) {
+        raw.append(parser.getRawSequence()).append('|');
+      }
+    });
+    parser.setRecordRawSequences(true);
+    for (char c : "a\033[1;2Hb\033[?25\rl".toCharArray()) {
+      parser.advance(c);
+    }
+    assertEquals("\033[1;2H|\033[?25\rl|", raw.toString());
+  }
+
+  private static void doTest(String input, String expected) throws IOException {
+    RecordingHandler handler = new RecordingHandler();
+    VtParser parser = new VtParser(handler);
+    for (char c : input.toCharArray()) {
+      parser.advance(c);
+    }
+    assertEquals(expected, handler.myLog.toString());
+    assertTrue(parser.isInGroundState());
+  }
+
+  private static class RecordingHandler implements VtParser.Handler {
+    private final StringBuilder myLog = new StringBuilder();
+    private final StringBuilder myOsc = new StringBuilder();
+
+    @Override
+    public void print(char c) {
+      myLog.append("print(").append(c).append(") ");
+    }
+
+    @Override
+    public void execute(char c) {
+      myLog.append("execute(").append((int)c).append(") ");
+    }
+
+    @Override
+    public void escDispatch(VtParser parser, char finalChar) {
+      myLog.append("esc(");
+      appendIntermediates(parser);
+      myLog.append(finalChar).append(") ");
+    }
+
+    @Override
+    public void csiDispatch(VtParser parser, char finalChar) {
+      myLog.append("csi(");
+      for (int i = 0; i < parser.getIntermediateCount() && parser.getIntermediate(i) >= '<'; i++) {
+        myLog.append(parser.getIntermediate(i));
+      }
+      for (int i = 0; i < parser.getParamCount(); i++) {
+        if (i > 0) {
+          myLog.append(';');
+        }
+        myLog.append(parser.getParam(i));
+      }
+      myLog.append(' ');
+      for (int i = 0; i < parser.getIntermediateCount(); i++) {
+        if (parser.getIntermediate(i) < '<') {
+          myLog.append(parser.getIntermediate(i));
+        }
+      }
+      myLog.append(finalChar).append(") ");
+    }
+
+    private void appendIntermediates(VtParser parser) {
+      for (int i = 0; i < parser.getIntermediateCount(); i++) {
+        myLog.append(parser.getIntermediate(i)).append(' ');
+      }
+    }
+
+    @Override
+    public void oscStart() {
+      myOsc.setLength(0);
+    }
+
+    @Override
+    public void oscPut(char c) {
+      myOsc.append(c);
+    }
+
+    @Override
+    public void oscEnd() {
+      myLog.append("osc(").append(myOsc).append(") ");
+    }
+
+    @Override
+    public void oscAbort() {
+      myLog.append("oscAbort ");
+    }
+
+    @Override
+    public void hook(VtParser parser, char finalChar) {
+      myLog.append("hook(").append(finalChar).append(") ");
+    }
+
+    @Override
+    public void put(char c) {
+    }
+
+    @Override
+    public void unhook() {
+      myLog.append("unhook ");
+    }
+  }
+}
@@ -0,0 +1,44 @@
+package com.jediterm.util;
+
+import com.jediterm.terminal.ArrayTerminalDataStream;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Iterator;
+
+/**
+ * Returns data by chunks, the next chunk is taken only after the previous one is read completely
+ *
+ * @author traff
+ */
+public class ChunkedDataStream extends ArrayTerminalDataStream {
+  private final Iterator<String> myChunks;
+
+  public ChunkedDataStream(String... chunks) {
+    super(new char[0]);
+    myChunks = Arrays.asList(chunks).iterator();
+  }
+
+  private void fillBuf() throws EOF {
+    while (myLength == 0) {
+      if (!myChunks.hasNext()) {
+        throw new EOF();
+      }
+      myBuf = myChunks.next().toCharArray();
+      myOffset = 0;
+      myLength = myBuf.length;
+    }
+  }
+
+  @Override
+  public char getChar() throws IOException {
+    fillBuf();
+    return super.getChar();
+  }
+
+  @Override
+  public String readNonControlCharacters(int maxChars) throws IOException {
+    fillBuf();
+    return super.readNonControlCharacters(maxChars);
+  }
+}
@@ -1,6 +1,7 @@
 package com.jediterm.util;
 
 import com.jediterm.terminal.ArrayTerminalDataStream;
+import com.jediterm.terminal.Terminal;
 import com.jediterm.terminal.TerminalDataStream;
 
 import java.io.File;
@@ -31,6 +32,11 @@ public class FileLoadableTerminalDataStream implements TerminalDataStream {
     return myDataStream.readNonControlCharacters(maxChars);
   }
 
+  @Override
+  public int writeNonControlCharacters(char first, int maxChars, Terminal terminal) throws IOException {
+    return myDataStream.writeNonControlCharacters(first, maxChars, terminal);
+  }
+
   @Override
   public void pushBackBuffer(char[] bytes, int length) throws IOException {
     myDataStream.pushBackBuffer(bytes, length);